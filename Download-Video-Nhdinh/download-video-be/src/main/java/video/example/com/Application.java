@@ -3,9 +3,11 @@ package video.example.com;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@ComponentScan(basePackages = {"video.example.com.controller"})
+@EnableScheduling
+@ComponentScan(basePackages = {"video.example.com.controller", "video.example.com.service"})
 public class Application {
    public static void main(String[] args) {
       SpringApplication.run(Application.class, args);
@@ -0,0 +1,106 @@
+package video.example.com.controller;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.servlet.http.HttpServletResponse;
+import video.example.com.service.BatchDownloadService;
+import video.example.com.service.DownloadBatch;
+
+@RestController
+@RequestMapping("/api/batch")
+@CrossOrigin(origins = "*")
+public class BatchDownloadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDownloadController.class);
+
+    private final BatchDownloadService batchDownloadService;
+
+    public BatchDownloadController(BatchDownloadService batchDownloadService) {
+        this.batchDownloadService = batchDownloadService;
+    }
+
+    /**
+     * Nhận danh sách URL (TikTok, Facebook, Instagram lẫn lộn) và bắt đầu tải cả lô.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, String>> startBatch(@RequestBody Map<String, List<String>> payload) {
+        try {
+            DownloadBatch batch = batchDownloadService.start(payload.get("urls"));
+            return ResponseEntity.ok(Map.of(
+                    "batchId", batch.id(),
+                    "total", String.valueOf(batch.view().total())
+            ));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected batch request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<DownloadBatch.View> batchStatus(@PathVariable String id) {
+        DownloadBatch batch = batchDownloadService.get(id);
+        if (batch == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(batch.view());
+    }
+
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBatch(@PathVariable String id) {
+        DownloadBatch batch = batchDownloadService.get(id);
+        if (batch == null) {
+            SseEmitter emitter = new SseEmitter(0L);
+            try {
+                emitter.send(SseEmitter.event().data("ERROR_Không tìm thấy danh sách tải."));
+            } catch (IOException e) {
+                logger.error("Failed to send error message: {}", e.getMessage(), e);
+            } finally {
+                emitter.complete();
+            }
+            return emitter;
+        }
+
+        SseEmitter emitter = new SseEmitter(1_800_000L); // Timeout 30 phút cho cả lô
+        batchDownloadService.subscribe(batch, emitter);
+        return emitter;
+    }
+
+    /**
+     * Tải tất cả video đã xong của lô trong một file ZIP.
+     */
+    @GetMapping("/{id}/zip")
+    public void downloadZip(@PathVariable String id, HttpServletResponse response) throws IOException {
+        DownloadBatch batch = batchDownloadService.get(id);
+        if (batch == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!batch.isFinished()) {
+            response.setStatus(HttpStatus.CONFLICT.value());
+            return;
+        }
+
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("videos-" + batch.id() + ".zip").build().toString());
+        batchDownloadService.writeZip(batch, response.getOutputStream());
+    }
+}
@@ -0,0 +1,34 @@
+package video.example.com.controller;
+
+import java.io.IOException;
+
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import video.example.com.service.CdnProxy;
+
+@RestController
+@RequestMapping("/api/proxy")
+@CrossOrigin(origins = "*")
+public class CdnProxyController {
+
+    private final CdnProxy cdnProxy;
+
+    public CdnProxyController(CdnProxy cdnProxy) {
+        this.cdnProxy = cdnProxy;
+    }
+
+    /**
+     * Phát videoUrl trả về từ /preview qua server: hỗ trợ Range nên thẻ {@code <video>} seek được ngay,
+     * không phải chờ tải hết file.
+     */
+    @RequestMapping(path = "/video", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void streamVideo(@RequestParam String url, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        cdnProxy.stream(url, request, response);
+    }
+}
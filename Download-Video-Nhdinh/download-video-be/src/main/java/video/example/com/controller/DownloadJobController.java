@@ -0,0 +1,105 @@
+package video.example.com.controller;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.service.DownloadJob;
+import video.example.com.service.DownloadJobService;
+import video.example.com.service.Platform;
+import video.example.com.service.RetryPolicy;
+import video.example.com.service.VideoTaskExecutor;
+import video.example.com.service.VideoUrlService;
+
+@RestController
+@RequestMapping("/api/jobs")
+@CrossOrigin(origins = "*")
+public class DownloadJobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadJobController.class);
+
+    private final DownloadJobService downloadJobService;
+    private final VideoUrlService videoUrlService;
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final RetryPolicy retryPolicy;
+
+    public DownloadJobController(DownloadJobService downloadJobService, VideoUrlService videoUrlService,
+                                 VideoTaskExecutor videoTaskExecutor, RetryPolicy retryPolicy) {
+        this.downloadJobService = downloadJobService;
+        this.videoUrlService = videoUrlService;
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Tạo job download cho một URL TikTok/Facebook/Instagram. Job chạy tiếp kể cả khi client ngắt kết nối.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, String>> createJob(@RequestBody Map<String, String> payload) {
+        String url = payload.get("url");
+        Platform platform = videoUrlService.detect(url);
+        if (platform == null) {
+            logger.warn("Rejected job for invalid URL: {}", url);
+            return ResponseEntity.badRequest().body(Map.of("error", "URL không hợp lệ."));
+        }
+
+        videoTaskExecutor.admit(platform);
+        retryPolicy.checkAvailable(platform);
+        DownloadJob job = downloadJobService.submit(platform, url.trim(), payload.get("title"));
+        logger.info("Created {} job {} for URL: {}", platform.id(), job.id(), url);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "jobId", job.id(),
+                "status", job.state().name()
+        ));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<DownloadJob.View> jobStatus(@PathVariable String id) {
+        DownloadJob job = downloadJobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.view());
+    }
+
+    /**
+     * Theo dõi progress của job; nhiều client có thể cùng theo dõi một job.
+     * EventSource tự gửi Last-Event-ID khi kết nối lại; client khác có thể truyền qua tham số lastEventId.
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter jobEvents(@PathVariable String id,
+                                @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        DownloadJob job = downloadJobService.get(id);
+        if (job == null) {
+            SseEmitter emitter = new SseEmitter(0L);
+            try {
+                emitter.send(SseEmitter.event().data("ERROR_Không tìm thấy job."));
+            } catch (IOException e) {
+                logger.error("Failed to send error message: {}", e.getMessage(), e);
+            } finally {
+                emitter.complete();
+            }
+            return emitter;
+        }
+
+        SseEmitter emitter = new SseEmitter(600_000L);
+        downloadJobService.subscribe(job, emitter, lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam);
+        return emitter;
+    }
+}
@@ -1,13 +1,15 @@
 package video.example.com.controller;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.time.Duration;
 import java.util.Map;
+import java.util.UUID;
 
-import org.springframework.core.io.InputStreamResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,98 +22,169 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import video.example.com.service.DownloadCache;
+import video.example.com.service.DownloadJob;
+import video.example.com.service.DownloadJobService;
+import video.example.com.service.InfoJsonCache;
+import video.example.com.service.Platform;
+import video.example.com.service.PreviewCache;
+import video.example.com.service.RetryPolicy;
+import video.example.com.service.SseProgressChannel;
+import video.example.com.service.SseProgressChannels;
+import video.example.com.service.ToolRegistry;
+import video.example.com.service.VideoDownloader;
+import video.example.com.service.VideoFileServer;
+import video.example.com.service.VideoMetrics;
+import video.example.com.service.VideoTaskExecutor;
+import video.example.com.service.VideoUrlService;
+import video.example.com.service.VideoUrlService.VideoRef;
 import video.example.com.util.FacebookVideoUtil;
+import video.example.com.util.YtDlpException;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "*")
 public class FacebookVideoController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacebookVideoController.class);
+
+    // Stream trực tiếp giữ slot runStreaming và kết nối client, nên cũng phải có hạn như lần tải thường
+    @Value("${ytdlp.download.timeout.minutes:30}")
+    private long streamTimeoutMinutes = 30;
+
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final VideoDownloader videoDownloader;
+    private final VideoUrlService videoUrlService;
+    private final DownloadJobService downloadJobService;
+    private final DownloadCache downloadCache;
+    private final PreviewCache previewCache;
+    private final VideoFileServer videoFileServer;
+    private final SseProgressChannels sseProgressChannels;
+    private final InfoJsonCache infoJsonCache;
+    private final RetryPolicy retryPolicy;
+    private final ToolRegistry toolRegistry;
+    private final VideoMetrics metrics;
+
+    public FacebookVideoController(VideoTaskExecutor videoTaskExecutor, VideoDownloader videoDownloader, VideoUrlService videoUrlService, DownloadJobService downloadJobService, DownloadCache downloadCache, PreviewCache previewCache,
+                                   VideoFileServer videoFileServer, SseProgressChannels sseProgressChannels, InfoJsonCache infoJsonCache,
+                                   RetryPolicy retryPolicy, ToolRegistry toolRegistry, VideoMetrics metrics) {
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.videoDownloader = videoDownloader;
+        this.videoUrlService = videoUrlService;
+        this.downloadJobService = downloadJobService;
+        this.downloadCache = downloadCache;
+        this.previewCache = previewCache;
+        this.videoFileServer = videoFileServer;
+        this.sseProgressChannels = sseProgressChannels;
+        this.infoJsonCache = infoJsonCache;
+        this.retryPolicy = retryPolicy;
+        this.toolRegistry = toolRegistry;
+        this.metrics = metrics;
+    }
+
 @GetMapping(value = "/download/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
 public SseEmitter streamDownload(@RequestParam String url, @RequestParam(required = false) String title) {
+    videoTaskExecutor.admit(Platform.FACEBOOK);
+    retryPolicy.checkAvailable(Platform.FACEBOOK);
     SseEmitter emitter = new SseEmitter(600_000L); // Tăng lên 10 phút
+    SseProgressChannel channel = sseProgressChannels.open(emitter);
+    DownloadJob job = downloadJobService.create(Platform.FACEBOOK, url);
 
-    new Thread(() -> {
+    videoTaskExecutor.submit(() -> {
+        downloadJobService.running(job);
         try {
-            String filename = FacebookVideoUtil.downloadVideoUsingYtDlp(url, title, progress -> {
-                try {
-                    emitter.send(SseEmitter.event().data(progress));
-                } catch (IOException e) {
-                    System.err.println("Client disconnected: " + e.getMessage());
-                }
-            });
+            VideoRef ref = videoUrlService.resolve(Platform.FACEBOOK, url);
+            String filename = videoDownloader.download(ref, title, channel::progress,
+                    (attempt, error, delayMs) -> channel.send("ERROR_Retry_" + error.getMessage()));
 
-            emitter.send(SseEmitter.event().data("DONE_" + filename));
+            downloadJobService.completed(job, filename);
+            channel.send("DONE_" + filename);
         } catch (Exception e) {
-            try {
-                emitter.send(SseEmitter.event().data("ERROR_Retry_" + e.getMessage()));
-                // Thêm retry logic nếu cần
-                Thread.sleep(2000); // Chờ 2 giây trước khi retry
-                String filename = FacebookVideoUtil.downloadVideoUsingYtDlp(url, title, progress -> {
-                    try {
-                        emitter.send(SseEmitter.event().data(progress));
-                    } catch (IOException ex) {
-                        System.err.println("Client disconnected: " + ex.getMessage());
-                    }
-                });
-                emitter.send(SseEmitter.event().data("DONE_" + filename));
-            } catch (Exception ex) {
-                // emitter.send(SseEmitter.event().data("ERROR_" + ex.getMessage()));
+            if (downloadJobService.failed(job, e.getMessage())) {
+                logger.error("Error during download: {}", e.getMessage());
+                channel.send("ERROR_" + e.getMessage());
             }
         } finally {
-            emitter.complete();
+            channel.close();
         }
-    }).start();
+    });
 
     return emitter;
 }
 
     @GetMapping("/download")
-    public ResponseEntity<InputStreamResource> downloadVideo(@RequestParam String filename) throws IOException {
-        File file = new File(filename);
-        if (!file.exists()) {
-            return ResponseEntity.notFound().build();
+    public void downloadVideo(@RequestParam String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        videoFileServer.serve(new File(filename), request, response);
+    }
+
+    /**
+     * Stream video thẳng từ stdout của yt-dlp ra response, không chờ tải xong vào file tạm.
+     * Nếu video đã có trong cache thì phục vụ file sẵn có.
+     */
+    @GetMapping("/download/direct")
+    public void streamDirect(@RequestParam String url, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!videoUrlService.isValid(Platform.FACEBOOK, url)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        VideoRef ref = videoUrlService.resolve(Platform.FACEBOOK, url);
+        String cached = downloadCache.lookup(ref.key());
+        if (cached != null) {
+            videoFileServer.serve(new File(cached), request, response);
+            return;
         }
 
-        InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"")
-                .contentLength(file.length())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+        response.setContentType("video/mp4");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(UUID.randomUUID() + ".mp4").build().toString());
+        try {
+            videoTaskExecutor.runStreaming(Platform.FACEBOOK, () -> {
+                FacebookVideoUtil.streamVideoUsingYtDlp(toolRegistry.path(ToolRegistry.Tool.YT_DLP), ref.canonicalUrl(),
+                        builder -> metrics.spawn("yt-dlp", builder), Duration.ofMinutes(streamTimeoutMinutes),
+                        response.getOutputStream());
+                return null;
+            });
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+        }
     }
 
     @PostMapping("/preview")
     public ResponseEntity<Map<String, String>> previewVideo(@RequestBody Map<String, String> payload) throws IOException {
         String fbUrl = payload.get("url");
-        if (fbUrl == null || !fbUrl.matches("https?://(www\\.)?(facebook\\.com|fb\\.watch|fb\\.com)/.*")) {
+        if (!videoUrlService.isValid(Platform.FACEBOOK, fbUrl)) {
             return ResponseEntity.badRequest().body(Map.of("error", "URL không hợp lệ."));
         }
 
-        ProcessBuilder pb = new ProcessBuilder("yt-dlp", "-f", "b", "-g", "--get-title", fbUrl);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-
-        String videoTitle = null;
-        String directUrl = null;
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
-            videoTitle = reader.readLine(); // Dòng đầu là title
-            directUrl = reader.readLine();  // Dòng hai là link mp4
-        }
+        retryPolicy.checkAvailable(Platform.FACEBOOK);
+        VideoRef ref = videoUrlService.resolve(Platform.FACEBOOK, fbUrl);
+        return previewCache.get(ref.key(), () -> videoTaskExecutor.preview(Platform.FACEBOOK, () -> loadPreview(ref)));
+    }
 
+    private ResponseEntity<Map<String, String>> loadPreview(VideoRef ref) throws IOException {
+        // Extract một lần; lần tải sau dùng lại info JSON này
+        InfoJsonCache.Info info;
         try {
-            int exit = process.waitFor();
-            if (exit != 0 || directUrl == null || !directUrl.contains(".mp4")) {
-                return ResponseEntity.status(500).body(Map.of("error", "Kiểm tra lại link."));
-            }
-            return ResponseEntity.ok(Map.of(
-                    "videoUrl", directUrl,
-                    "title", videoTitle != null ? videoTitle : ""
-            ));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return ResponseEntity.status(500).body(Map.of("error", "Lỗi hệ thống."));
+            info = infoJsonCache.get(ref, "");
+        } catch (YtDlpException e) {
+            logger.warn("Preview extraction failed for {}: {}", ref.canonicalUrl(), e.getMessage());
+            return ResponseEntity.status(500).body(Map.of("error", "Kiểm tra lại link."));
+        }
+        String directUrl = info.progressiveMp4Url();
+        if (directUrl == null) {
+            return ResponseEntity.status(500).body(Map.of("error", "Kiểm tra lại link."));
         }
+        return ResponseEntity.ok(Map.of(
+                "videoUrl", directUrl,
+                "title", info.title() != null ? info.title() : ""
+        ));
     }
 
 }
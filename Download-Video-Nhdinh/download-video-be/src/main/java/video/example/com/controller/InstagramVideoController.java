@@ -1,18 +1,15 @@
 package video.example.com.controller;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
 import java.util.Map;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -25,7 +22,26 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import video.example.com.service.DownloadCache;
+import video.example.com.service.DownloadJob;
+import video.example.com.service.DownloadJobService;
+import video.example.com.service.InfoJsonCache;
+import video.example.com.service.Platform;
+import video.example.com.service.PreviewCache;
+import video.example.com.service.RetryPolicy;
+import video.example.com.service.SseProgressChannel;
+import video.example.com.service.SseProgressChannels;
+import video.example.com.service.ToolRegistry;
+import video.example.com.service.VideoDownloader;
+import video.example.com.service.VideoFileServer;
+import video.example.com.service.VideoMetrics;
+import video.example.com.service.VideoTaskExecutor;
+import video.example.com.service.VideoUrlService;
+import video.example.com.service.VideoUrlService.VideoRef;
 import video.example.com.util.InstagramVideoUtil;
+import video.example.com.util.YtDlpException;
 
 @RestController
 @RequestMapping("/api/instagram")
@@ -34,96 +50,107 @@ public class InstagramVideoController {
 
     private static final Logger logger = LoggerFactory.getLogger(InstagramVideoController.class);
 
+    // Stream trực tiếp giữ slot runStreaming và kết nối client, nên cũng phải có hạn như lần tải thường
+    @Value("${ytdlp.download.timeout.minutes:30}")
+    private long streamTimeoutMinutes = 30;
+
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final VideoDownloader videoDownloader;
+    private final VideoUrlService videoUrlService;
+    private final DownloadJobService downloadJobService;
+    private final DownloadCache downloadCache;
+    private final PreviewCache previewCache;
+    private final VideoFileServer videoFileServer;
+    private final SseProgressChannels sseProgressChannels;
+    private final InfoJsonCache infoJsonCache;
+    private final RetryPolicy retryPolicy;
+    private final ToolRegistry toolRegistry;
+    private final VideoMetrics metrics;
+
+    public InstagramVideoController(VideoTaskExecutor videoTaskExecutor, VideoDownloader videoDownloader, VideoUrlService videoUrlService, DownloadJobService downloadJobService, DownloadCache downloadCache, PreviewCache previewCache,
+                                    VideoFileServer videoFileServer, SseProgressChannels sseProgressChannels, InfoJsonCache infoJsonCache,
+                                    RetryPolicy retryPolicy, ToolRegistry toolRegistry, VideoMetrics metrics) {
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.videoDownloader = videoDownloader;
+        this.videoUrlService = videoUrlService;
+        this.downloadJobService = downloadJobService;
+        this.downloadCache = downloadCache;
+        this.previewCache = previewCache;
+        this.videoFileServer = videoFileServer;
+        this.sseProgressChannels = sseProgressChannels;
+        this.infoJsonCache = infoJsonCache;
+        this.retryPolicy = retryPolicy;
+        this.toolRegistry = toolRegistry;
+        this.metrics = metrics;
+    }
+
     @PostMapping("/preview")
-    public ResponseEntity<Map<String, String>> previewVideo(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<Map<String, String>> previewVideo(@RequestBody Map<String, String> payload) throws IOException {
         String instaUrl = payload.get("url");
         logger.info("Received preview request for URL: {}", instaUrl);
 
-        if (instaUrl == null || !instaUrl.matches("https?://(www\\.)?instagram\\.com/reel/[a-zA-Z0-9_-]+(/|\\?[^\\s]*)?")) {
+        if (!videoUrlService.isValid(Platform.INSTAGRAM, instaUrl)) {
             logger.error("Invalid Instagram URL: {}", instaUrl);
             return ResponseEntity.badRequest().body(Map.of("error", "URL không hợp lệ."));
         }
 
-        // Process the URL using yt-dlp
-        ProcessBuilder pb = new ProcessBuilder("yt-dlp", "-f", "best", "-g", "--get-title", instaUrl);
-        pb.redirectErrorStream(true);
+        retryPolicy.checkAvailable(Platform.INSTAGRAM);
+        VideoRef ref = videoUrlService.resolve(Platform.INSTAGRAM, instaUrl);
+        return previewCache.get(ref.key(), () -> videoTaskExecutor.preview(Platform.INSTAGRAM, () -> loadPreview(ref)));
+    }
 
-        List<String> outputLines = new ArrayList<>();
-        int exit = -1;
+    private ResponseEntity<Map<String, String>> loadPreview(VideoRef ref) {
+        // Extract một lần bằng --dump-single-json; lần tải sau dùng lại info JSON này
+        InfoJsonCache.Info info;
         try {
-            Process process = pb.start();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    outputLines.add(line);
-                    logger.info("yt-dlp output: {}", line);
-                }
-            }
-            try {
-                exit = process.waitFor();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Interrupted while waiting for process: {}", e.getMessage());
-                return ResponseEntity.status(500).body(Map.of("error", "Lỗi hệ thống (quá trình bị gián đoạn)."));
-            }
+            info = infoJsonCache.get(ref, "");
+        } catch (YtDlpException e) {
+            logger.error("Failed to fetch preview for URL: {}. {}", ref.canonicalUrl(), e.getMessage());
+            return ResponseEntity.status(500).body(Map.of("error", "Không thể lấy link xem trước."));
         } catch (IOException e) {
             logger.error("IOException when running yt-dlp: {}", e.getMessage());
             return ResponseEntity.status(500).body(Map.of("error", "Lỗi hệ thống (không chạy được yt-dlp)."));
         }
 
-        logger.info("yt-dlp exit code: {}", exit);
-
-        // Extract video URL and title from yt-dlp output
-        String directUrl = outputLines.stream()
-                .filter(line -> line.contains(".mp4") && line.startsWith("http"))
-                .findFirst().orElse(null);
-
-        String videoTitle = outputLines.stream()
-                .map(String::trim)
-                .filter(line -> !line.isEmpty())
-                .filter(line -> !line.toLowerCase().contains("warning"))
-                .findFirst()
-                .orElse("Instagram Video (không có tiêu đề)")
-                .trim();
-
-        if (exit != 0 || directUrl == null) {
-            logger.error("Failed to fetch preview for URL: {}. Output: {}", instaUrl, outputLines);
+        String directUrl = info.progressiveMp4Url();
+        if (directUrl == null) {
+            logger.error("No playable MP4 in info JSON for URL: {}", ref.canonicalUrl());
             return ResponseEntity.status(500).body(Map.of("error", "Không thể lấy link xem trước."));
         }
 
         return ResponseEntity.ok(Map.of(
                 "videoUrl", directUrl,
-                "title", videoTitle
+                "title", info.title() != null ? info.title().trim() : "Instagram Video (không có tiêu đề)"
         ));
     }
 
     @GetMapping(value = "/download/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter streamDownload(@RequestParam String url) {
         logger.info("Received download request for URL: {}", url);
+        videoTaskExecutor.admit(Platform.INSTAGRAM);
+        retryPolicy.checkAvailable(Platform.INSTAGRAM);
         SseEmitter emitter = new SseEmitter(300_000L); // Timeout 5 phút
+        SseProgressChannel channel = sseProgressChannels.open(emitter);
+        DownloadJob job = downloadJobService.create(Platform.INSTAGRAM, url);
 
-        new Thread(() -> {
+        videoTaskExecutor.submit(() -> {
+            downloadJobService.running(job);
             try {
-                String filename = InstagramVideoUtil.downloadVideoUsingYtDlp(url, progress -> {
-                    try {
-                        emitter.send(SseEmitter.event().data(progress));
-                    } catch (IOException e) {
-                        logger.error("Client disconnected during SSE: {}", e.getMessage());
-                    }
-                });
-
-                emitter.send(SseEmitter.event().data("DONE_" + filename));
+                VideoRef ref = videoUrlService.resolve(Platform.INSTAGRAM, url);
+                String filename = videoDownloader.download(ref, channel::progress);
+
+                downloadJobService.completed(job, filename);
+                channel.send("DONE_" + filename);
                 logger.info("Download completed for file: {}", filename);
             } catch (Exception e) {
-                logger.error("Error during download: {}", e.getMessage());
-                try {
-                    emitter.send(SseEmitter.event().data("ERROR_" + e.getMessage()));
-                } catch (IOException ignored) {
+                if (downloadJobService.failed(job, e.getMessage())) {
+                    logger.error("Error during download: {}", e.getMessage());
+                    channel.send("ERROR_" + e.getMessage());
                 }
             } finally {
-                emitter.complete();
+                channel.close();
             }
-        }).start();
+        });
 
         return emitter;
     }
@@ -132,19 +159,46 @@ public class InstagramVideoController {
      * Download file về máy người dùng
      */
     @GetMapping("/download")
-    public ResponseEntity<InputStreamResource> downloadVideo(@RequestParam String filename) throws IOException {
-        File file = new File(filename);
-        if (!file.exists()) {
-            logger.error("File not found: {}", filename);
-            return ResponseEntity.notFound().build();
+    public void downloadVideo(@RequestParam String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        videoFileServer.serve(new File(filename), request, response);
+    }
+
+    /**
+     * Stream video thẳng từ stdout của yt-dlp ra response, không chờ tải xong vào file tạm.
+     * Nếu video đã có trong cache thì phục vụ file sẵn có.
+     */
+    @GetMapping("/download/direct")
+    public void streamDirect(@RequestParam String url, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!videoUrlService.isValid(Platform.INSTAGRAM, url)) {
+            logger.warn("Invalid Instagram URL: {}", url);
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
         }
 
-        InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
-        logger.info("Serving file for download: {}", filename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getName())
-                .contentLength(file.length())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+        VideoRef ref = videoUrlService.resolve(Platform.INSTAGRAM, url);
+        String cached = downloadCache.lookup(ref.key());
+        if (cached != null) {
+            videoFileServer.serve(new File(cached), request, response);
+            return;
+        }
+
+        response.setContentType("video/mp4");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(UUID.randomUUID() + ".mp4").build().toString());
+        try {
+            videoTaskExecutor.runStreaming(Platform.INSTAGRAM, () -> {
+                InstagramVideoUtil.streamVideoUsingYtDlp(toolRegistry.path(ToolRegistry.Tool.YT_DLP), ref.canonicalUrl(),
+                        builder -> metrics.spawn("yt-dlp", builder), Duration.ofMinutes(streamTimeoutMinutes),
+                        response.getOutputStream());
+                return null;
+            });
+        } catch (IOException e) {
+            logger.error("Direct stream failed for URL: {}: {}", url, e.getMessage());
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+        }
     }
 }
@@ -0,0 +1,43 @@
+package video.example.com.controller;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import video.example.com.service.CircuitOpenException;
+import video.example.com.service.PlatformOverloadedException;
+
+/**
+ * Trả 429 kèm Retry-After khi platform đã đầy limit, 503 khi circuit breaker đang mở; áp dụng cho mọi controller.
+ */
+@RestControllerAdvice
+public class OverloadExceptionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverloadExceptionHandler.class);
+
+    @ExceptionHandler(PlatformOverloadedException.class)
+    public ResponseEntity<Map<String, String>> handleOverloaded(PlatformOverloadedException e) {
+        logger.warn("{}, retry after {}s", e.getMessage(), e.getRetryAfterSeconds());
+        // Đặt sẵn Content-Type JSON vì endpoint SSE chỉ khai báo text/event-stream
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "Hệ thống đang quá tải, vui lòng thử lại sau " + e.getRetryAfterSeconds() + " giây."));
+    }
+
+    @ExceptionHandler(CircuitOpenException.class)
+    public ResponseEntity<Map<String, String>> handleCircuitOpen(CircuitOpenException e) {
+        logger.warn("{}, retry after {}s", e.getMessage(), e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "Nền tảng đang gặp sự cố, vui lòng thử lại sau " + e.getRetryAfterSeconds() + " giây."));
+    }
+}
@@ -0,0 +1,200 @@
+package video.example.com.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Giới hạn số tiến trình chạy đồng thời, tự điều chỉnh theo kiểu AIMD:
+ * mỗi lần chạy thành công với độ trễ bình thường thì tăng khoảng 1 sau mỗi "cửa sổ" đầy (limit += 1/limit),
+ * khi lỗi hoặc độ trễ vượt {@code latencyTolerance} lần mức nền thì nhân limit với {@code decreaseRatio}
+ * (tối đa một lần mỗi {@code decreaseCooldownMs} để một đợt lỗi không kéo limit về tối thiểu ngay).
+ * Ngoài limit cho phép thêm {@code queueSize} lượt chờ; quá mức đó thì {@link #tryAcquire()} từ chối ngay.
+ */
+public final class AdaptiveLimit {
+
+    // Trọng số EWMA cho độ trễ nền, nhỏ để một lần chạy lâu không đẩy mức nền lên ngay
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final double decreaseRatio;
+    private final double latencyTolerance;
+    private final long decreaseCooldownNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double baselineLatencyMs = -1;
+    private long lastDecreaseAt;
+
+    public AdaptiveLimit(String name, int initialLimit, int minLimit, int maxLimit, int queueSize,
+                         double decreaseRatio, double latencyTolerance, long decreaseCooldownMs) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.queueSize = Math.max(0, queueSize);
+        this.decreaseRatio = decreaseRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.decreaseCooldownNanos = TimeUnit.MILLISECONDS.toNanos(decreaseCooldownMs);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.lastDecreaseAt = System.nanoTime() - decreaseCooldownNanos;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Lấy một slot nếu còn chỗ (kể cả chỗ chờ), chờ tới lượt nếu đang trong hàng đợi.
+     * Trả về false ngay nếu cả limit lẫn hàng đợi đã đầy.
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                inFlight++;
+                return true;
+            }
+            if (waiting >= queueSize) {
+                return false;
+            }
+            return awaitSlot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lấy một slot, chờ không giới hạn. Dùng cho việc nội bộ đã tự giới hạn số lượng (batch, job khôi phục).
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                inFlight++;
+                return;
+            }
+            awaitSlot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitSlot() throws InterruptedException {
+        waiting++;
+        try {
+            while (inFlight >= currentLimit()) {
+                available.await();
+            }
+            inFlight++;
+            return true;
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * Trả slot kèm kết quả để điều chỉnh limit. {@code latencyMs} âm nghĩa là không dùng độ trễ lần này làm tín hiệu.
+     */
+    public void release(long latencyMs, boolean success) {
+        lock.lock();
+        try {
+            inFlight--;
+            boolean slow = latencyMs >= 0 && baselineLatencyMs > 0 && latencyMs > baselineLatencyMs * latencyTolerance;
+            if (success && !slow) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            } else {
+                long now = System.nanoTime();
+                if (now - lastDecreaseAt >= decreaseCooldownNanos) {
+                    limit = Math.max(minLimit, limit * decreaseRatio);
+                    lastDecreaseAt = now;
+                }
+            }
+            if (success && latencyMs >= 0) {
+                baselineLatencyMs = baselineLatencyMs < 0 ? latencyMs
+                        : baselineLatencyMs + LATENCY_SMOOTHING * (latencyMs - baselineLatencyMs);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Trả slot mà không điều chỉnh limit, khi kết quả không nói gì về tải của upstream.
+     */
+    public void releaseIgnored() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Còn nhận thêm việc mà không vượt hàng đợi hay không.
+     */
+    public boolean hasCapacity() {
+        lock.lock();
+        try {
+            return inFlight + waiting < currentLimit() + queueSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ước lượng số giây nên chờ trước khi thử lại: thời gian để hàng đợi hiện tại chạy xong một lượt.
+     */
+    public long retryAfterSeconds() {
+        lock.lock();
+        try {
+            double latency = baselineLatencyMs > 0 ? baselineLatencyMs : 1000;
+            double seconds = latency * (waiting + 1) / currentLimit() / 1000;
+            return Math.max(1, Math.min(60, (long) Math.ceil(seconds)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Số lượt đang chờ slot (độ sâu hàng đợi).
+     */
+    public int waiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package video.example.com.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.service.VideoUrlService.VideoRef;
+
+/**
+ * Tải nhiều URL trong một lô: tối đa {@code batch.max.parallel} item chạy cùng lúc (vẫn trong giới hạn của từng platform),
+ * progress tổng và từng item đi qua một kết nối SSE, kết quả trả về thành một file ZIP stream trực tiếp.
+ */
+@Component
+public class BatchDownloadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDownloadService.class);
+
+    public static final String EVENT_NAME = "batch";
+
+    @Value("${batch.max.parallel:4}")
+    private int maxParallel = 4;
+
+    @Value("${batch.max.items:50}")
+    private int maxItems = 50;
+
+    @Value("${batch.retention.minutes:30}")
+    private long retentionMinutes = 30;
+
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final VideoUrlService videoUrlService;
+    private final VideoDownloader videoDownloader;
+    private final SseProgressChannels sseProgressChannels;
+    private final DownloadJobService downloadJobService;
+    private final StorageManager storageManager;
+    private final Map<String, DownloadBatch> batches = new ConcurrentHashMap<>();
+
+    public BatchDownloadService(VideoTaskExecutor videoTaskExecutor, VideoUrlService videoUrlService,
+                                VideoDownloader videoDownloader, SseProgressChannels sseProgressChannels,
+                                DownloadJobService downloadJobService, StorageManager storageManager) {
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.videoUrlService = videoUrlService;
+        this.videoDownloader = videoDownloader;
+        this.sseProgressChannels = sseProgressChannels;
+        this.downloadJobService = downloadJobService;
+        this.storageManager = storageManager;
+    }
+
+    /**
+     * Tạo lô và bắt đầu tải ngay. URL trùng nhau chỉ giữ một lần.
+     *
+     * @throws IllegalArgumentException nếu danh sách rỗng, quá dài hoặc có URL không hợp lệ
+     */
+    public DownloadBatch start(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách URL trống.");
+        }
+        Set<String> unique = new LinkedHashSet<>();
+        for (String url : urls) {
+            if (url != null && !url.isBlank()) {
+                unique.add(url.trim());
+            }
+        }
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách URL trống.");
+        }
+        if (unique.size() > maxItems) {
+            throw new IllegalArgumentException("Tối đa " + maxItems + " URL mỗi lần.");
+        }
+
+        List<DownloadBatch.Item> items = new ArrayList<>(unique.size());
+        for (String url : unique) {
+            Platform platform = videoUrlService.detect(url);
+            if (platform == null) {
+                throw new IllegalArgumentException("URL không hợp lệ: " + url);
+            }
+            items.add(new DownloadBatch.Item(items.size(), url, platform));
+        }
+
+        DownloadBatch batch = new DownloadBatch(UUID.randomUUID().toString(), items);
+        batches.put(batch.id(), batch);
+        logger.info("Starting batch {} with {} items", batch.id(), items.size());
+        Thread.ofVirtual().name("batch-" + batch.id()).start(() -> run(batch));
+        return batch;
+    }
+
+    public DownloadBatch get(String id) {
+        return batches.get(id);
+    }
+
+    /**
+     * Mở kênh SSE cho lô: message mặc định "PROGRESS_n" là progress tổng, event "batch" là JSON trạng thái từng item.
+     * Khi item xong gửi "ITEM_i_DONE" hoặc "ITEM_i_ERROR_...", khi cả lô xong gửi "DONE_batchId" hoặc "ERROR_...".
+     */
+    public void subscribe(DownloadBatch batch, SseEmitter emitter) {
+        SseProgressChannel channel = sseProgressChannels.open(emitter, (target, event) -> {
+            Set<DataWithMediaType> data = new LinkedHashSet<>(SseEmitter.event().data(event.legacyMessage()).build());
+            data.addAll(SseEmitter.event().name(EVENT_NAME).data(batch.view(), MediaType.APPLICATION_JSON).build());
+            target.send(data);
+        });
+        Runnable detach = () -> {
+            batch.unsubscribe(channel);
+            channel.disconnect();
+        };
+        emitter.onCompletion(detach);
+        emitter.onTimeout(detach);
+        emitter.onError(e -> detach.run());
+        batch.subscribe(channel);
+    }
+
+    private void run(DownloadBatch batch) {
+        batch.markRunning();
+        int parallel = maxParallel > 0 ? maxParallel : 4;
+        Semaphore slots = new Semaphore(parallel);
+        try {
+            for (DownloadBatch.Item item : batch.items()) {
+                slots.acquire();
+                DownloadJob job = downloadJobService.create(item.platform, item.url);
+                try {
+                    videoTaskExecutor.submit(() -> {
+                        try {
+                            runItem(batch, item, job);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    downloadJobService.failed(job, "Server shutting down");
+                    item.error = "Server đang tắt.";
+                    item.status = DownloadBatch.Status.FAILED;
+                }
+            }
+            // Chờ các item cuối cùng
+            slots.acquire(parallel);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Batch {} interrupted", batch.id());
+        }
+
+        long completed = batch.items().stream().filter(item -> item.status == DownloadBatch.Status.DONE).count();
+        logger.info("Batch {} finished: {}/{} items downloaded", batch.id(), completed, batch.items().size());
+        if (completed > 0) {
+            batch.finish(DownloadBatch.Status.DONE, "DONE_" + batch.id());
+        } else {
+            batch.finish(DownloadBatch.Status.FAILED, "ERROR_Không tải được video nào trong danh sách.");
+        }
+    }
+
+    private void runItem(DownloadBatch batch, DownloadBatch.Item item, DownloadJob job) {
+        downloadJobService.running(job);
+        item.status = DownloadBatch.Status.RUNNING;
+        batch.publishProgress();
+        try {
+            VideoRef ref = videoUrlService.resolve(item.platform, item.url);
+            String path = videoDownloader.download(ref, event -> {
+                item.percent = event.percent();
+                batch.publishProgress();
+            });
+            // Tính CRC ngay khi file vừa tải xong (còn trong page cache) để lúc ghi ZIP chỉ còn copy
+            File file = new File(path);
+            item.size = file.length();
+            item.crc = crc32(file);
+            item.file = path;
+            downloadJobService.completed(job, path);
+            item.percent = 100;
+            item.status = DownloadBatch.Status.DONE;
+            batch.publish("ITEM_" + item.index + "_DONE");
+        } catch (IOException | RuntimeException e) {
+            if (downloadJobService.failed(job, e.getMessage())) {
+                logger.warn("Batch {} item {} failed: {}", batch.id(), item.url, e.getMessage());
+            }
+            item.error = e.getMessage();
+            item.status = DownloadBatch.Status.FAILED;
+            batch.publish("ITEM_" + item.index + "_ERROR_" + e.getMessage());
+        }
+        batch.publishProgress();
+    }
+
+    /**
+     * Ghi các file đã tải của lô thành ZIP với entry STORED (video đã nén sẵn, deflate chỉ tốn CPU),
+     * stream thẳng ra {@code out} mà không dựng archive trong bộ nhớ hay trên đĩa.
+     */
+    public void writeZip(DownloadBatch batch, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.setMethod(ZipOutputStream.STORED);
+        Set<String> names = new HashSet<>();
+        for (DownloadBatch.Item item : batch.items()) {
+            if (item.status != DownloadBatch.Status.DONE) {
+                continue;
+            }
+            File file = new File(item.file);
+            if (!file.isFile()) {
+                logger.warn("Batch {} file vanished before zipping: {}", batch.id(), item.file);
+                continue;
+            }
+            long size = file.length();
+            long crc = size == item.size ? item.crc : crc32(file);
+
+            ZipEntry entry = new ZipEntry(uniqueName(names, file.getName()));
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc);
+            entry.setTime(file.lastModified());
+            zip.putNextEntry(entry);
+            try (StorageManager.Lease lease = storageManager.pin(file.toPath())) {
+                Files.copy(file.toPath(), zip);
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    private static String uniqueName(Set<String> names, String name) {
+        if (names.add(name)) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            String candidate = base + " (" + i + ")" + ext;
+            if (names.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    static long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    @Scheduled(fixedDelayString = "${batch.cleanup.interval.ms:60000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        batches.values().removeIf(batch -> batch.isFinished() && batch.finishedAt() < cutoff);
+    }
+}
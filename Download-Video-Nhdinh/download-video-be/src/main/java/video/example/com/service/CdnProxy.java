@@ -0,0 +1,222 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import video.example.com.util.StallWatchdog;
+
+/**
+ * Stream link CDN đã resolve (videoUrl của /preview) qua server để client khỏi hotlink (CORS, Referer).
+ * Header Range/If-Range/validator được chuyển lên upstream và status 200/206/304/416 trả về nguyên vẹn,
+ * nên trình phát có thể seek và bắt đầu phát sau một round trip. Byte đi thẳng upstream → client qua
+ * buffer lấy từ pool, không ghi file tạm; {@link HttpClient} giữ kết nối keep-alive tới CDN.
+ * Chỉ host thuộc {@code cdn.proxy.allowed.domains} mới được proxy.
+ */
+@Component
+public class CdnProxy {
+
+    private static final Logger logger = LoggerFactory.getLogger(CdnProxy.class);
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
+    // Header của client được chuyển lên CDN và header của CDN được trả về client
+    private static final List<String> REQUEST_HEADERS = List.of(HttpHeaders.RANGE, HttpHeaders.IF_RANGE,
+            HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE);
+    private static final List<String> RESPONSE_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_RANGE, HttpHeaders.ACCEPT_RANGES, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED);
+    private static final Set<Integer> PASS_THROUGH_STATUS = Set.of(200, 206, 304, 416);
+    private static final Set<Integer> REDIRECT_STATUS = Set.of(301, 302, 303, 307, 308);
+    private static final int MAX_REDIRECTS = 5;
+
+    @Value("${cdn.proxy.allowed.domains:fbcdn.net,cdninstagram.com,tiktokcdn.com,muscdn.com}")
+    private String allowedDomainsSpec = "fbcdn.net,cdninstagram.com,tiktokcdn.com,muscdn.com";
+
+    @Value("${cdn.proxy.buffer.kb:64}")
+    private int bufferKb = 64;
+
+    @Value("${cdn.proxy.buffer.pool.size:64}")
+    private int poolSize = 64;
+
+    // Timeout chờ header, cũng là thời gian tối đa không nhận được byte nào của body
+    @Value("${cdn.proxy.timeout.seconds:30}")
+    private long timeoutSeconds = 30;
+
+    // Tự theo redirect để kiểm tra lại allowlist ở mỗi bước
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final LongAdder bytesServed = new LongAdder();
+    private Set<String> allowedDomains;
+    private BlockingQueue<byte[]> buffers;
+    // Chỉ test mới cho phép http:// (server local)
+    private boolean allowPlainHttp;
+
+    public CdnProxy() {
+    }
+
+    CdnProxy(String allowedDomainsSpec, int bufferKb, int poolSize) {
+        this.allowedDomainsSpec = allowedDomainsSpec;
+        this.bufferKb = bufferKb;
+        this.poolSize = poolSize;
+        this.allowPlainHttp = true;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        allowedDomains = Arrays.stream(allowedDomainsSpec.split(","))
+                .map(d -> d.trim().toLowerCase(Locale.ROOT))
+                .filter(d -> !d.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        buffers = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    /**
+     * Link có được phép proxy không: https và host là (subdomain của) một domain trong allowlist.
+     */
+    public boolean isAllowed(String url) {
+        if (url == null) {
+            return false;
+        }
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (host == null || !("https".equalsIgnoreCase(scheme) || (allowPlainHttp && "http".equalsIgnoreCase(scheme)))) {
+            return false;
+        }
+        String h = host.toLowerCase(Locale.ROOT);
+        return allowedDomains.stream().anyMatch(d -> h.equals(d) || h.endsWith("." + d));
+    }
+
+    /**
+     * Stream {@code url} ra {@code response}. Link ngoài allowlist trả 403; CDN lỗi (link hết hạn...),
+     * redirect ra ngoài allowlist hoặc quá {@value #MAX_REDIRECTS} lần trả 502.
+     */
+    public void stream(String url, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!isAllowed(url)) {
+            logger.warn("Rejected CDN proxy for URL outside allowlist: {}", url);
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+        URI target = URI.create(url.trim());
+        HttpResponse<InputStream> upstreamResponse;
+        for (int hops = 0; ; hops++) {
+            try {
+                upstreamResponse = httpClient.send(upstreamRequest(target, head, request), HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while proxying " + url, e);
+            } catch (IOException e) {
+                logger.warn("CDN request failed for {}: {}", url, e.getMessage());
+                response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+                return;
+            }
+            if (!REDIRECT_STATUS.contains(upstreamResponse.statusCode())) {
+                break;
+            }
+            upstreamResponse.body().close();
+            String location = upstreamResponse.headers().firstValue(HttpHeaders.LOCATION).orElse(null);
+            URI next = null;
+            try {
+                next = location == null ? null : target.resolve(location);
+            } catch (IllegalArgumentException e) {
+                // Location sai cú pháp, xử lý như redirect không hợp lệ
+            }
+            if (next == null || hops >= MAX_REDIRECTS || !isAllowed(next.toString())) {
+                logger.warn("Rejected CDN redirect from {} to {} after {} hops", target, location, hops + 1);
+                response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+                return;
+            }
+            target = next;
+        }
+
+        // CDN ngừng gửi giữa chừng thì đóng kết nối thay vì giữ thread và buffer mãi
+        try (InputStream in = StallWatchdog.guard(upstreamResponse.body(), Duration.ofSeconds(timeoutSeconds))) {
+            int status = upstreamResponse.statusCode();
+            if (!PASS_THROUGH_STATUS.contains(status)) {
+                logger.warn("CDN returned HTTP {} for {}", status, url);
+                response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+                return;
+            }
+            response.setStatus(status);
+            for (String name : RESPONSE_HEADERS) {
+                upstreamResponse.headers().firstValue(name).ifPresent(value -> response.setHeader(name, value));
+            }
+            if (!head && status != 304) {
+                copy(in, response.getOutputStream());
+            }
+        }
+    }
+
+    private HttpRequest upstreamRequest(URI target, boolean head, HttpServletRequest request) {
+        HttpRequest.Builder upstream = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .header("User-Agent", USER_AGENT);
+        for (String name : REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) {
+                upstream.header(name, value);
+            }
+        }
+        return upstream.method(head ? "HEAD" : "GET", HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[bufferKb * 1024];
+        }
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                bytesServed.add(read);
+            }
+            out.flush();
+        } finally {
+            // Pool đầy thì bỏ buffer cho GC thu hồi
+            buffers.offer(buffer);
+        }
+    }
+
+    public long bytesServed() {
+        return bytesServed.sum();
+    }
+
+    int pooledBuffers() {
+        return buffers.size();
+    }
+}
@@ -0,0 +1,98 @@
+package video.example.com.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker đếm lỗi liên tiếp: đủ {@code failureThreshold} lần thì mở trong {@code openMs},
+ * mọi lần gọi bị từ chối ngay. Hết thời gian mở thì cho đúng một lần thử (half-open):
+ * thành công thì đóng lại, lỗi thì mở tiếp.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMs) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Có được gọi upstream không. Khi half-open chỉ lần gọi đầu tiên được đi qua.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        probeInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Lần gọi kết thúc mà không cho biết gì về sức khoẻ upstream (lỗi do chính video): chỉ nhả lượt thử half-open.
+     */
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    /**
+     * Đang mở và chưa hết thời gian chờ, tức lần gọi mới chắc chắn bị từ chối.
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Số giây còn lại trước khi cho thử lại, tối thiểu 1.
+     */
+    public synchronized long retryAfterSeconds() {
+        long remaining = openNanos - (System.nanoTime() - openedAt);
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining) + 1);
+    }
+}
@@ -0,0 +1,24 @@
+package video.example.com.service;
+
+/**
+ * Circuit breaker của platform đang mở: từ chối ngay thay vì gọi upstream đang lỗi. Controller trả 503 kèm Retry-After.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private final String breaker;
+    private final long retryAfterSeconds;
+
+    public CircuitOpenException(String breaker, long retryAfterSeconds) {
+        super("Circuit breaker " + breaker + " is open");
+        this.breaker = breaker;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getBreaker() {
+        return breaker;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
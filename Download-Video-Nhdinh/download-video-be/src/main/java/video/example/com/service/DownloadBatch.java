@@ -0,0 +1,149 @@
+package video.example.com.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import video.example.com.util.ProgressEvent;
+
+/**
+ * Một lô URL tải cùng nhau. Trạng thái từng item được cập nhật bởi thread tải;
+ * mọi client đang theo dõi nhận progress tổng (kèm trạng thái từng item) qua SSE.
+ */
+public final class DownloadBatch {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    public record ItemView(int index, String url, Status status, double percent, String error) {
+    }
+
+    public record View(String id, Status status, double percent, int completed, int failed, int total, List<ItemView> items) {
+    }
+
+    static final class Item {
+        final int index;
+        final String url;
+        final Platform platform;
+        volatile Status status = Status.QUEUED;
+        volatile double percent;
+        volatile String file;
+        volatile long size = -1;
+        volatile long crc = -1;
+        volatile String error;
+
+        Item(int index, String url, Platform platform) {
+            this.index = index;
+            this.url = url;
+            this.platform = platform;
+        }
+    }
+
+    private final String id;
+    private final List<Item> items;
+    private final List<SseProgressChannel> subscribers = new CopyOnWriteArrayList<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile long finishedAt;
+    private String finalMessage;
+
+    DownloadBatch(String id, List<Item> items) {
+        this.id = id;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    long finishedAt() {
+        return finishedAt;
+    }
+
+    List<Item> items() {
+        return items;
+    }
+
+    public View view() {
+        List<ItemView> itemViews = new ArrayList<>(items.size());
+        int completed = 0;
+        int failed = 0;
+        for (Item item : items) {
+            Status itemStatus = item.status;
+            if (itemStatus == Status.DONE) {
+                completed++;
+            } else if (itemStatus == Status.FAILED) {
+                failed++;
+            }
+            itemViews.add(new ItemView(item.index, item.url, itemStatus, item.percent, item.error));
+        }
+        return new View(id, status, percent(), completed, failed, items.size(), itemViews);
+    }
+
+    /**
+     * Progress tổng: trung bình progress các item, item đã xong (kể cả lỗi) tính 100%.
+     */
+    public double percent() {
+        if (items.isEmpty()) {
+            return 100;
+        }
+        double sum = 0;
+        for (Item item : items) {
+            sum += item.status == Status.DONE || item.status == Status.FAILED ? 100 : item.percent;
+        }
+        return sum / items.size();
+    }
+
+    void markRunning() {
+        status = Status.RUNNING;
+    }
+
+    void publishProgress() {
+        ProgressEvent event = new ProgressEvent(percent(), -1, -1, -1, -1, -1, -1);
+        for (SseProgressChannel channel : subscribers) {
+            channel.progress(event);
+        }
+    }
+
+    void publish(String message) {
+        for (SseProgressChannel channel : subscribers) {
+            channel.send(message);
+        }
+    }
+
+    /**
+     * Gắn thêm client. Client đến muộn nhận ngay trạng thái hiện tại, và message kết thúc nếu lô đã xong.
+     */
+    synchronized void subscribe(SseProgressChannel channel) {
+        channel.progress(new ProgressEvent(percent(), -1, -1, -1, -1, -1, -1));
+        if (finalMessage != null) {
+            channel.send(finalMessage);
+            channel.close();
+            return;
+        }
+        subscribers.add(channel);
+    }
+
+    void unsubscribe(SseProgressChannel channel) {
+        subscribers.remove(channel);
+    }
+
+    synchronized void finish(Status finalStatus, String message) {
+        status = finalStatus;
+        finishedAt = System.currentTimeMillis();
+        finalMessage = message;
+        publishProgress();
+        for (SseProgressChannel channel : subscribers) {
+            channel.send(message);
+            channel.close();
+        }
+        subscribers.clear();
+    }
+}
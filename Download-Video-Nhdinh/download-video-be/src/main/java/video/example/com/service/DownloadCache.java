@@ -0,0 +1,143 @@
+package video.example.com.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import video.example.com.util.ProgressEvent;
+
+/**
+ * Cache file đã tải theo định danh video ({@link VideoUrlService.VideoRef#key()}).
+ * Request trùng video đang tải sẽ gắn vào lần tải đang chạy thay vì chạy yt-dlp lần nữa.
+ */
+@Component
+public class DownloadCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadCache.class);
+
+    @FunctionalInterface
+    public interface Downloader {
+        String download(Consumer<ProgressEvent> progressCallback) throws IOException;
+    }
+
+    private final Map<String, String> completed = new ConcurrentHashMap<>();
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    // Gắn vào lần tải đang chạy cũng tính là hit: không tốn thêm lần tải nào
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public String getOrDownload(String key, Consumer<ProgressEvent> progressCallback, Downloader downloader) throws IOException {
+        String cached = lookup(key);
+        if (cached != null) {
+            logger.info("Download cache hit for {}: {}", key, cached);
+            hits.increment();
+            return cached;
+        }
+
+        InFlight own = new InFlight();
+        InFlight existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            logger.info("Joining in-flight download for {}", key);
+            hits.increment();
+            return existing.join(progressCallback);
+        }
+
+        try {
+            // Một request khác có thể vừa hoàn tất giữa lookup và putIfAbsent
+            cached = lookup(key);
+            if (cached != null) {
+                hits.increment();
+                own.result.complete(cached);
+                return cached;
+            }
+            misses.increment();
+            if (progressCallback != null) {
+                own.subscribers.add(progressCallback);
+            }
+            String path = downloader.download(own::publish);
+            completed.put(key, path);
+            own.result.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            own.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public String lookup(String key) {
+        String path = completed.get(key);
+        if (path == null) {
+            return null;
+        }
+        if (!new File(path).isFile()) {
+            completed.remove(key, path);
+            logger.info("Cached file vanished, evicting {}: {}", key, path);
+            return null;
+        }
+        return path;
+    }
+
+    private static final class InFlight {
+        private final List<Consumer<ProgressEvent>> subscribers = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile ProgressEvent lastProgress;
+
+        private void publish(ProgressEvent progress) {
+            lastProgress = progress;
+            for (Consumer<ProgressEvent> subscriber : subscribers) {
+                try {
+                    subscriber.accept(progress);
+                } catch (RuntimeException e) {
+                    logger.warn("Progress subscriber failed: {}", e.getMessage());
+                }
+            }
+        }
+
+        private String join(Consumer<ProgressEvent> progressCallback) throws IOException {
+            if (progressCallback != null) {
+                subscribers.add(progressCallback);
+                ProgressEvent last = lastProgress;
+                if (last != null) {
+                    progressCallback.accept(last);
+                }
+            }
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for in-flight download", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("In-flight download failed: " + cause.getMessage(), cause);
+            } finally {
+                if (progressCallback != null) {
+                    subscribers.remove(progressCallback);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package video.example.com.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.service.JobJournal.State;
+import video.example.com.util.ProgressEvent;
+
+/**
+ * Một lần download có id, sống độc lập với kết nối SSE. Event của job (progress, DONE_, ERROR_...)
+ * được đánh số tăng dần; message giữ trong buffer giới hạn, progress chỉ giữ bản mới nhất,
+ * để client kết nối lại gửi Last-Event-ID và nhận tiếp phần còn thiếu.
+ */
+public final class DownloadJob {
+
+    public record View(String id, Platform platform, String url, State state, double percent, String file, String error,
+                       long createdAt) {
+    }
+
+    private record Event(long id, String message) {
+    }
+
+    private final String id;
+    private final Platform platform;
+    private final String url;
+    private final String title;
+    private final int attempt;
+    private final long createdAt = System.currentTimeMillis();
+    private final int bufferSize;
+    private final Deque<Event> messages = new ArrayDeque<>();
+    private final List<SseProgressChannel> subscribers = new ArrayList<>();
+    private long nextEventId = 1;
+    private volatile long lastProgressId;
+    private ProgressEvent lastProgress;
+    private volatile State state = State.QUEUED;
+    private volatile double percent;
+    private volatile String file;
+    private volatile String error;
+    private volatile long finishedAt;
+
+    DownloadJob(String id, Platform platform, String url, String title, int attempt, int bufferSize) {
+        this.id = id;
+        this.platform = platform;
+        this.url = url;
+        this.title = title;
+        this.attempt = attempt;
+        this.bufferSize = Math.max(2, bufferSize);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Platform platform() {
+        return platform;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public int attempt() {
+        return attempt;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public String file() {
+        return file;
+    }
+
+    public String error() {
+        return error;
+    }
+
+    long finishedAt() {
+        return finishedAt;
+    }
+
+    public View view() {
+        return new View(id, platform, url, state, percent, file, error, createdAt);
+    }
+
+    void markRunning() {
+        state = State.RUNNING;
+    }
+
+    synchronized void progress(ProgressEvent event) {
+        if (state.isTerminal()) {
+            return;
+        }
+        percent = event.percent();
+        lastProgress = event;
+        lastProgressId = nextEventId++;
+        for (SseProgressChannel channel : subscribers) {
+            channel.progress(event);
+        }
+    }
+
+    /**
+     * Message thường (không kết thúc job), ví dụ báo đang thử lại.
+     */
+    synchronized void message(String message) {
+        long eventId = append(message);
+        for (SseProgressChannel channel : subscribers) {
+            channel.send(SseEmitter.event().id(String.valueOf(eventId)).data(message));
+        }
+    }
+
+    synchronized void complete(String path) {
+        file = path;
+        percent = 100;
+        finish(State.DONE, "DONE_" + path);
+    }
+
+    synchronized void fail(String reason) {
+        error = reason;
+        finish(State.FAILED, "ERROR_" + reason);
+    }
+
+    private void finish(State finalState, String message) {
+        if (state.isTerminal()) {
+            return;
+        }
+        state = finalState;
+        finishedAt = System.currentTimeMillis();
+        long eventId = append(message);
+        for (SseProgressChannel channel : subscribers) {
+            channel.send(SseEmitter.event().id(String.valueOf(eventId)).data(message));
+            channel.close();
+        }
+        subscribers.clear();
+    }
+
+    private long append(String message) {
+        long eventId = nextEventId++;
+        messages.addLast(new Event(eventId, message));
+        while (messages.size() > bufferSize) {
+            messages.pollFirst();
+        }
+        return eventId;
+    }
+
+    /**
+     * Id của progress mới nhất, dùng làm id SSE khi kênh gửi progress đã gộp.
+     */
+    long lastProgressId() {
+        return lastProgressId;
+    }
+
+    /**
+     * Gắn client: gửi lại progress mới nhất và các message có id lớn hơn {@code lastEventId} còn trong buffer,
+     * rồi nhận tiếp event mới.
+     * Nếu job đã kết thúc thì đóng kênh ngay sau khi gửi lại.
+     */
+    synchronized void subscribe(SseProgressChannel channel, long lastEventId) {
+        if (lastProgress != null && lastProgressId > lastEventId) {
+            channel.progress(lastProgress);
+        }
+        for (Event event : messages) {
+            if (event.id() > lastEventId) {
+                channel.send(SseEmitter.event().id(String.valueOf(event.id())).data(event.message()));
+            }
+        }
+        if (state.isTerminal()) {
+            channel.close();
+            return;
+        }
+        subscribers.add(channel);
+    }
+
+    synchronized void unsubscribe(SseProgressChannel channel) {
+        subscribers.remove(channel);
+    }
+
+    synchronized int subscriberCount() {
+        return subscribers.size();
+    }
+}
@@ -0,0 +1,180 @@
+package video.example.com.service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.service.JobJournal.Entry;
+import video.example.com.service.JobJournal.State;
+import video.example.com.service.VideoUrlService.VideoRef;
+
+/**
+ * Quản lý vòng đời các {@link DownloadJob}: ghi mỗi lần đổi trạng thái vào {@link JobJournal} (QUEUED → RUNNING → DONE/FAILED)
+ * và giữ job trong bộ nhớ để client tra cứu hoặc theo dõi lại theo id.
+ * Sau khi restart/crash, job còn dở được chạy lại với cùng id qua {@link VideoDownloader}; file kết quả vào {@link DownloadCache},
+ * nên client kết nối lại sẽ gắn vào job đó hoặc trúng cache thay vì tải lại từ đầu.
+ */
+@Component
+public class DownloadJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadJobService.class);
+
+    // Job làm tiến trình chết nhiều lần liên tiếp thì bỏ, tránh crash loop
+    @Value("${jobs.recovery.max.attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${jobs.events.buffer.size:32}")
+    private int eventBufferSize = 32;
+
+    @Value("${jobs.retention.minutes:30}")
+    private long retentionMinutes = 30;
+
+    private final JobJournal journal;
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final VideoUrlService videoUrlService;
+    private final VideoDownloader videoDownloader;
+    private final SseProgressChannels sseProgressChannels;
+    private final Map<String, DownloadJob> jobs = new ConcurrentHashMap<>();
+
+    public DownloadJobService(JobJournal journal, VideoTaskExecutor videoTaskExecutor, VideoUrlService videoUrlService,
+                              VideoDownloader videoDownloader, SseProgressChannels sseProgressChannels) {
+        this.journal = journal;
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.videoUrlService = videoUrlService;
+        this.videoDownloader = videoDownloader;
+        this.sseProgressChannels = sseProgressChannels;
+    }
+
+    /**
+     * Ghi job mới ở trạng thái QUEUED, gọi trước khi đưa việc vào executor.
+     * Dùng cho các luồng tự chạy download (SSE cũ, batch); {@link #submit} vừa tạo vừa chạy.
+     */
+    public DownloadJob create(Platform platform, String url) {
+        return register(new DownloadJob(UUID.randomUUID().toString(), platform, url, null, 1, eventBufferSize));
+    }
+
+    private DownloadJob register(DownloadJob job) {
+        jobs.put(job.id(), job);
+        record(job, State.QUEUED);
+        return job;
+    }
+
+    public void running(DownloadJob job) {
+        job.markRunning();
+        record(job, State.RUNNING);
+    }
+
+    public void completed(DownloadJob job, String file) {
+        job.complete(file);
+        record(job, State.DONE);
+    }
+
+    /**
+     * Ghi job thất bại. Nếu lỗi là do server đang tắt (thread bị ngắt) thì giữ RUNNING trong journal để lần khởi động
+     * sau chạy lại, và trả về false.
+     */
+    public boolean failed(DownloadJob job, String error) {
+        if (Thread.currentThread().isInterrupted() || videoTaskExecutor.isTerminating()) {
+            logger.info("Job {} interrupted by shutdown, leaving it for recovery", job.id());
+            return false;
+        }
+        job.fail(error);
+        record(job, State.FAILED);
+        return true;
+    }
+
+    private void record(DownloadJob job, State state) {
+        journal.append(new Entry(job.id(), state, job.platform(), job.url(), job.attempt(), System.currentTimeMillis(),
+                job.file(), job.error()));
+    }
+
+    /**
+     * Tạo job và chạy download trong nền; client theo dõi qua {@link #subscribe}.
+     */
+    public DownloadJob submit(Platform platform, String url, String title) {
+        DownloadJob job = register(new DownloadJob(UUID.randomUUID().toString(), platform, url, title, 1, eventBufferSize));
+        execute(job);
+        return job;
+    }
+
+    private void execute(DownloadJob job) {
+        videoTaskExecutor.submit(() -> {
+            running(job);
+            try {
+                VideoRef ref = videoUrlService.resolve(job.platform(), job.url());
+                completed(job, videoDownloader.download(ref, job.title(), job::progress,
+                        (attempt, error, delayMs) -> job.message("ERROR_Retry_" + error.getMessage())));
+            } catch (Exception e) {
+                if (failed(job, e.getMessage())) {
+                    logger.warn("Job {} failed: {}", job.id(), e.getMessage());
+                }
+            }
+        });
+    }
+
+    public DownloadJob get(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Gắn một kết nối SSE vào job. {@code lastEventId} là header Last-Event-ID của client (null nếu kết nối lần đầu).
+     */
+    public void subscribe(DownloadJob job, SseEmitter emitter, String lastEventId) {
+        SseProgressChannel channel = sseProgressChannels.open(emitter,
+                (target, event) -> SseProgress.send(target, event, String.valueOf(job.lastProgressId())));
+        Runnable detach = () -> {
+            job.unsubscribe(channel);
+            channel.disconnect();
+        };
+        emitter.onCompletion(detach);
+        emitter.onTimeout(detach);
+        emitter.onError(e -> detach.run());
+        job.subscribe(channel, parseEventId(lastEventId));
+    }
+
+    static long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Chạy lại các job còn dở từ lần chạy trước, sau khi ứng dụng đã sẵn sàng nhận request.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        for (Entry entry : journal.recovered()) {
+            DownloadJob job = new DownloadJob(entry.id(), entry.platform(), entry.url(), null, entry.attempt() + 1, eventBufferSize);
+            if (job.attempt() > maxAttempts) {
+                logger.warn("Giving up on job {} after {} attempts: {}", job.id(), entry.attempt(), job.url());
+                jobs.put(job.id(), job);
+                failed(job, "Quá số lần thử lại sau khi server khởi động lại.");
+                continue;
+            }
+            logger.info("Recovering {} job {} ({}): {}", job.platform().id(), job.id(), entry.state(), job.url());
+            register(job);
+            execute(job);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.cleanup.interval.ms:60000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        jobs.values().removeIf(job -> job.state().isTerminal() && job.finishedAt() < cutoff);
+    }
+}
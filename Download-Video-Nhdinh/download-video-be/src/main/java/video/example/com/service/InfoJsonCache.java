@@ -0,0 +1,320 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import video.example.com.service.VideoUrlService.VideoRef;
+import video.example.com.util.ProcessPump;
+import video.example.com.util.YtDlpArgs;
+import video.example.com.util.YtDlpException;
+
+/**
+ * Extract mỗi video một lần bằng {@code yt-dlp --dump-single-json} và giữ file info JSON theo URL chuẩn hoá.
+ * Preview đọc title/thumbnail/format từ đó, còn lần tải dùng lại file qua {@code --load-info-json}
+ * thay vì extract lại từ đầu. Hạn cache không vượt quá hạn của link CDN đã ký bên trong.
+ */
+@Component
+public class InfoJsonCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(InfoJsonCache.class);
+
+    private static final int ERROR_TAIL_CHARS = 4000;
+
+    // Header giống lúc tải TikTok, thiếu thì TikTok hay trả trang chặn bot
+    private static final List<String> TIKTOK_ARGS = List.of(
+            "--user-agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36",
+            "--add-header", "Referer:https://www.tiktok.com/",
+            "--add-header", "Origin:https://www.tiktok.com");
+
+    /**
+     * Một format trong info JSON; giá trị số -1 và codec null khi yt-dlp không biết.
+     * Chỉ codec "none" mới nghĩa là không có hình/tiếng (extractor FB/IG thường bỏ trống codec).
+     */
+    public record Format(String formatId, String ext, String vcodec, String acodec, int width, int height, long filesize, String url) {
+        boolean progressive() {
+            return !"none".equals(vcodec) && !"none".equals(acodec);
+        }
+    }
+
+    /**
+     * Info đã extract; {@code file} là đường dẫn truyền cho {@code --load-info-json}.
+     */
+    public record Info(Path file, String title, String thumbnail, String url, List<Format> formats) {
+        /**
+         * Link MP4 có cả hình và tiếng để client phát trực tiếp (format tốt nhất đứng cuối danh sách), null nếu không có.
+         */
+        public String progressiveMp4Url() {
+            for (int i = formats.size() - 1; i >= 0; i--) {
+                Format format = formats.get(i);
+                if ("mp4".equals(format.ext()) && format.progressive() && format.url() != null) {
+                    return format.url();
+                }
+            }
+            return url != null && url.contains(".mp4") ? url : null;
+        }
+    }
+
+    @Value("${info.cache.dir:${java.io.tmpdir}/video-download/info}")
+    private String dir;
+
+    @Value("${info.cache.ttl.seconds:600}")
+    private long ttlSeconds = 600;
+
+    @Value("${info.cache.max.size:1000}")
+    private int maxSize = 1000;
+
+    // Trừ hao để lần tải còn kịp dùng link trước khi CDN hết hạn
+    @Value("${info.cache.expiry.margin.seconds:60}")
+    private long expiryMarginSeconds = 60;
+
+    // Extract chỉ tải trang/API, không tải video: quá lâu thì coi như treo, như timeout preview trước đây
+    @Value("${info.extract.timeout.seconds:60}")
+    private long extractTimeoutSeconds = 60;
+
+    @Value("${tiktok.cookies.path:}")
+    private String tiktokCookiesPath = "";
+
+    private final ToolRegistry toolRegistry;
+    private final YtDlpWorkerPool workerPool;
+    private final VideoMetrics metrics;
+    private final ProcessPump processPump;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Map<String, CompletableFuture<Info>> inFlight = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Path root;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxSize) {
+                deleteQuietly(eldest.getValue().info.file());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public InfoJsonCache(ToolRegistry toolRegistry, YtDlpWorkerPool workerPool, VideoMetrics metrics,
+                         ProcessPump processPump) {
+        this.toolRegistry = toolRegistry;
+        this.workerPool = workerPool;
+        this.metrics = metrics;
+        this.processPump = processPump;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Path.of(dir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+    }
+
+    /**
+     * Info của {@code ref} từ cache, hoặc extract mới qua {@code proxy} (rỗng = đi thẳng).
+     * Nhiều request cùng video lúc cache trống chờ chung một lần extract.
+     */
+    public Info get(VideoRef ref, String proxy) throws IOException {
+        Info cached = lookup(ref.key());
+        if (cached != null) {
+            logger.debug("Info JSON cache hit for {}", ref.key());
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<Info> own = new CompletableFuture<>();
+        CompletableFuture<Info> existing = inFlight.putIfAbsent(ref.key(), own);
+        if (existing != null) {
+            logger.debug("Joining in-flight extract for {}", ref.key());
+            hits.increment();
+            return join(existing);
+        }
+        try {
+            // Một request khác có thể vừa extract xong giữa lookup và putIfAbsent
+            Info info = lookup(ref.key());
+            if (info != null) {
+                hits.increment();
+            } else {
+                info = load(ref, proxy);
+            }
+            own.complete(info);
+            return info;
+        } catch (IOException | RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(ref.key(), own);
+        }
+    }
+
+    private Info lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis() && Files.isRegularFile(entry.info.file())) {
+                    return entry.info;
+                }
+                entries.remove(key);
+            }
+        }
+        return null;
+    }
+
+    private static Info join(CompletableFuture<Info> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for in-flight extract", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("In-flight extract failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private Info load(VideoRef ref, String proxy) throws IOException {
+        misses.increment();
+        long now = System.currentTimeMillis();
+        Path file = root.resolve(ref.platform().id() + "-" + ref.videoId().replaceAll("[^A-Za-z0-9_-]", "_") + ".info.json");
+        long start = System.nanoTime();
+        Info info;
+        try {
+            extract(ref, proxy, file);
+            info = parse(file, Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            metrics.phase("extract", start, VideoMetrics.FAILURE, "platform", ref.platform().id());
+            throw e;
+        }
+        metrics.phase("extract", start, VideoMetrics.SUCCESS, "platform", ref.platform().id());
+        long expiresAt = now + ttlSeconds * 1000;
+        long signedExpiry = PreviewCache.signedUrlExpiry(info.progressiveMp4Url());
+        if (signedExpiry > 0) {
+            expiresAt = Math.min(expiresAt, signedExpiry - expiryMarginSeconds * 1000);
+        }
+        synchronized (entries) {
+            entries.put(ref.key(), new Entry(info, expiresAt));
+        }
+        logger.info("Extracted info JSON for {} ({} formats)", ref.key(), info.formats().size());
+        return info;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Bỏ info của {@code key}, ví dụ khi tải bằng info cũ bị CDN từ chối; lần sau sẽ extract lại.
+     */
+    public void invalidate(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    private void extract(VideoRef ref, String proxy, Path file) throws IOException {
+        List<String> command = new ArrayList<>(YtDlpArgs.withProxy(proxy, toolRegistry.path(ToolRegistry.Tool.YT_DLP)));
+        if (ref.platform() == Platform.TIKTOK) {
+            command.addAll(TIKTOK_ARGS);
+            if (!tiktokCookiesPath.isEmpty()) {
+                command.addAll(List.of("--cookies", tiktokCookiesPath));
+            }
+        }
+        command.addAll(List.of("--dump-single-json", "--no-warnings", ref.canonicalUrl()));
+
+        // Tên tạm riêng cho mỗi lần extract: hai lần extract cùng video (sau invalidate) không ghi đè file của nhau
+        Path partial = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".part");
+        try {
+            if (workerPool != null && workerPool.isAvailable(ref.platform())) {
+                // Worker đã import sẵn yt-dlp, bỏ qua chi phí khởi động Python cho mỗi lần extract
+                YtDlpWorkerPool.Result result = workerPool.execute(ref.platform(), command.subList(1, command.size()), null,
+                        Duration.ofSeconds(extractTimeoutSeconds));
+                if (result.exitCode() != 0) {
+                    throw new YtDlpException(result.exitCode(), tail(result.stderr()));
+                }
+                Files.writeString(partial, result.stdout(), StandardCharsets.UTF_8);
+            } else {
+                // stdout (JSON có thể vài MB) ghi thẳng ra file tạm, stderr giữ lại để phân loại lỗi cho RetryPolicy
+                ProcessBuilder pb = new ProcessBuilder(command).redirectOutput(partial.toFile());
+                logger.debug("Executing yt-dlp command: {}", command);
+                Process process = metrics.spawn("yt-dlp", pb);
+                StringBuilder errors = new StringBuilder();
+                int exitCode = processPump.run(process, process.getErrorStream(), line -> errors.append(line).append('\n'),
+                        Duration.ofSeconds(extractTimeoutSeconds));
+                if (exitCode != 0) {
+                    throw new YtDlpException(exitCode, tail(errors.toString()));
+                }
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteQuietly(partial);
+        }
+    }
+
+    private static String tail(String errors) {
+        return errors.length() > ERROR_TAIL_CHARS ? errors.substring(errors.length() - ERROR_TAIL_CHARS) : errors;
+    }
+
+    Info parse(Path file, String json) throws IOException {
+        JsonNode root = objectMapper.readTree(json);
+        List<Format> formats = new ArrayList<>();
+        for (JsonNode f : root.path("formats")) {
+            formats.add(new Format(
+                    f.path("format_id").asText(""),
+                    f.path("ext").asText(""),
+                    textOrNull(f, "vcodec"),
+                    textOrNull(f, "acodec"),
+                    f.path("width").asInt(-1),
+                    f.path("height").asInt(-1),
+                    f.hasNonNull("filesize") ? f.path("filesize").asLong() : f.path("filesize_approx").asLong(-1),
+                    f.path("url").isTextual() ? f.path("url").asText() : null));
+        }
+        return new Info(file,
+                textOrNull(root, "title"),
+                textOrNull(root, "thumbnail"),
+                textOrNull(root, "url"),
+                List.copyOf(formats));
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        return value.isTextual() && !value.asText().isEmpty() ? value.asText() : null;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private record Entry(Info info, long expiresAt) {
+    }
+}
@@ -0,0 +1,186 @@
+package video.example.com.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Journal append-only trên đĩa cho các job download: mỗi lần đổi trạng thái ghi một dòng JSON.
+ * Khi khởi động đọc lại journal để biết job nào còn QUEUED/RUNNING, rồi ghi lại file chỉ với các job đó (compact).
+ * Dòng cuối bị cắt dở do crash được bỏ qua.
+ */
+@Component
+public class JobJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobJournal.class);
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED;
+
+        public boolean isTerminal() {
+            return this == DONE || this == FAILED;
+        }
+    }
+
+    public record Entry(String id, State state, Platform platform, String url, int attempt, long at, String file, String error) {
+    }
+
+    @Value("${jobs.journal.path:${java.io.tmpdir}/video-download/jobs.journal}")
+    private String journalPath;
+
+    // fsync sau mỗi lần ghi; tắt đi thì nhanh hơn nhưng crash của OS có thể mất vài dòng cuối
+    @Value("${jobs.journal.fsync:true}")
+    private boolean fsync = true;
+
+    @Value("${jobs.journal.compact.threshold:10000}")
+    private int compactThreshold = 10000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Entry> active = new LinkedHashMap<>();
+    private final List<Entry> recovered = new ArrayList<>();
+    private Path path;
+    private FileChannel channel;
+    private int appendedSinceCompact;
+
+    public JobJournal() {
+    }
+
+    JobJournal(Path path, boolean fsync, int compactThreshold) {
+        this.journalPath = path.toString();
+        this.fsync = fsync;
+        this.compactThreshold = compactThreshold;
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        path = Path.of(journalPath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (Files.exists(path)) {
+            replay();
+        }
+        recovered.clear();
+        recovered.addAll(active.values());
+        compact();
+        if (!recovered.isEmpty()) {
+            logger.info("Job journal {} has {} unfinished jobs to recover", path, recovered.size());
+        }
+    }
+
+    private void replay() throws IOException {
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Entry entry;
+                try {
+                    entry = objectMapper.readValue(line, Entry.class);
+                } catch (JsonProcessingException e) {
+                    logger.warn("Skipping corrupt job journal line {}: {}", lineNumber, e.getOriginalMessage());
+                    continue;
+                }
+                apply(entry);
+            }
+        }
+    }
+
+    private void apply(Entry entry) {
+        if (entry.state().isTerminal()) {
+            active.remove(entry.id());
+        } else {
+            active.put(entry.id(), entry);
+        }
+    }
+
+    /**
+     * Các job chưa xong lúc tiến trình trước dừng lại, theo thứ tự tạo.
+     */
+    public synchronized List<Entry> recovered() {
+        return List.copyOf(recovered);
+    }
+
+    public synchronized void append(Entry entry) {
+        apply(entry);
+        try {
+            byte[] line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            if (++appendedSinceCompact >= compactThreshold) {
+                compact();
+            }
+        } catch (IOException e) {
+            // Không chặn download vì journal lỗi, chỉ mất khả năng khôi phục job này
+            logger.error("Failed to append to job journal {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi lại journal chỉ với các job còn dở, qua file tạm rồi đổi tên nguyên tử.
+     */
+    private void compact() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : active.values()) {
+                ByteBuffer buffer = ByteBuffer.wrap((objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        appendedSinceCompact = 0;
+    }
+
+    synchronized int activeCount() {
+        return active.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close job journal {}: {}", path, e.getMessage());
+        }
+    }
+}
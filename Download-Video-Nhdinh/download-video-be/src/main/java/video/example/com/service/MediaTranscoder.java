@@ -0,0 +1,254 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import video.example.com.util.ProcessPump;
+
+/**
+ * Đưa file đã tải về dạng MP4 H.264 mà trình duyệt nào cũng phát được, với chi phí CPU thấp nhất:
+ * probe stream bằng ffprobe, giữ nguyên nếu đã đúng, remux (stream copy) nếu chỉ sai container,
+ * và chỉ re-encode stream nào không tương thích.
+ * <p>
+ * Đây là stage CPU của pipeline tải: slot tải của platform được trả ngay khi file về đĩa, còn ffmpeg chạy trên
+ * {@link WorkerStage} riêng cỡ bằng số core ({@code transcode.workers}) với hàng đợi hand-off giới hạn
+ * ({@code transcode.queue.size}). Khi hàng đợi dồn quá {@code transcode.busy.threshold} thì x264 chuyển sang
+ * preset nhanh {@code transcode.preset.busy}.
+ */
+@Component
+public class MediaTranscoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaTranscoder.class);
+
+    private static final Set<String> COMPATIBLE_VIDEO = Set.of("h264");
+    private static final Set<String> COMPATIBLE_AUDIO = Set.of("aac", "mp3");
+    private static final int OUTPUT_TAIL_LINES = 20;
+
+    public enum Action {
+        KEEP, REMUX, TRANSCODE
+    }
+
+    /**
+     * Kết quả ffprobe; codec null nghĩa là file không có stream loại đó.
+     */
+    public record Probe(String container, String videoCodec, String audioCodec) {
+    }
+
+    /**
+     * Kế hoạch xử lý: stream nào copy, stream nào encode lại.
+     */
+    public record Plan(Action action, boolean copyVideo, boolean copyAudio) {
+    }
+
+    @Value("${transcode.preset:medium}")
+    private String preset = "medium";
+
+    @Value("${transcode.preset.busy:veryfast}")
+    private String busyPreset = "veryfast";
+
+    @Value("${transcode.crf:23}")
+    private int crf = 23;
+
+    // Số ffmpeg chạy song song; 0 = số CPU
+    @Value("${transcode.workers:0}")
+    private int workers;
+
+    @Value("${transcode.queue.size:16}")
+    private int queueSize = 16;
+
+    @Value("${transcode.timeout.minutes:30}")
+    private long timeoutMinutes = 30;
+
+    @Value("${transcode.probe.timeout.seconds:60}")
+    private long probeTimeoutSeconds = 60;
+
+    // Số file chờ transcode để coi là "bận"; 0 = bằng số worker
+    @Value("${transcode.busy.threshold:0}")
+    private int busyThreshold;
+
+    private final ToolRegistry toolRegistry;
+    private final VideoMetrics metrics;
+    private final ProcessPump processPump;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WorkerStage stage;
+
+    public MediaTranscoder(ToolRegistry toolRegistry, VideoMetrics metrics, ProcessPump processPump) {
+        this.toolRegistry = toolRegistry;
+        this.metrics = metrics;
+        this.processPump = processPump;
+    }
+
+    @PostConstruct
+    void init() {
+        stage = new WorkerStage("transcode", workers > 0 ? workers : Runtime.getRuntime().availableProcessors(), queueSize);
+    }
+
+    public WorkerStage stage() {
+        return stage;
+    }
+
+    /**
+     * Làm cho {@code path} thành MP4 H.264/AAC tại chỗ (cùng đường dẫn). Trả về đường dẫn file kết quả.
+     * Chờ tới lượt trên stage transcode; chặn người gọi khi hàng đợi đầy.
+     */
+    public String ensureCompatible(String path) throws IOException {
+        if (!toolRegistry.isAvailable(ToolRegistry.Tool.FFMPEG)) {
+            logger.warn("ffmpeg unavailable, keeping {} as downloaded", path);
+            return path;
+        }
+        return stage.run(() -> process(path));
+    }
+
+    private String process(String path) throws IOException {
+        Path input = Path.of(path);
+        Plan plan;
+        if (toolRegistry.isAvailable(ToolRegistry.Tool.FFPROBE)) {
+            Probe probe = probe(input);
+            plan = plan(probe);
+            logger.info("Probed {}: {} -> {}", input.getFileName(), probe, plan.action());
+        } else {
+            // Không probe được thì transcode như trước đây cho chắc
+            plan = new Plan(Action.TRANSCODE, false, false);
+            logger.warn("ffprobe unavailable, transcoding {} unconditionally", input);
+        }
+        if (plan.action() == Action.KEEP) {
+            return path;
+        }
+
+        boolean busy = stage.backlog() >= (busyThreshold > 0 ? busyThreshold : stage.workers());
+        Path output = input.resolveSibling(input.getFileName() + ".part");
+        long start = System.nanoTime();
+        String action = plan.action().name().toLowerCase(Locale.ROOT);
+        try {
+            run(command(plan, input, output, busy ? busyPreset : preset, crf));
+            Files.move(output, input, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            metrics.phase("transcode", start, VideoMetrics.FAILURE, "action", action);
+            throw e;
+        }
+        metrics.phase("transcode", start, VideoMetrics.SUCCESS, "action", action);
+        logger.info("{} {} in {} ms{}", plan.action(), input.getFileName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), busy ? " (busy preset)" : "");
+        return path;
+    }
+
+    Probe probe(Path input) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(toolRegistry.path(ToolRegistry.Tool.FFPROBE),
+                "-v", "error", "-show_entries", "format=format_name:stream=codec_type,codec_name",
+                "-of", "json", input.toString());
+        // Gộp stderr để pipe lỗi không đầy làm ffprobe treo; dòng lỗi (nếu có) đứng trước JSON
+        pb.redirectErrorStream(true);
+        Process process = metrics.spawn("ffprobe", pb);
+        StringBuilder output = new StringBuilder();
+        try {
+            int exitCode = processPump.run(process, line -> output.append(line).append('\n'),
+                    Duration.ofSeconds(probeTimeoutSeconds));
+            if (exitCode != 0) {
+                throw new IOException("ffprobe failed for " + input + ": " + output.toString().strip());
+            }
+        } finally {
+            process.destroy();
+        }
+        int json = output.indexOf("{");
+        if (json < 0) {
+            throw new IOException("ffprobe returned no JSON for " + input + ": " + output.toString().strip());
+        }
+        return parseProbe(output.substring(json));
+    }
+
+    Probe parseProbe(String json) throws IOException {
+        JsonNode root = objectMapper.readTree(json);
+        String container = root.path("format").path("format_name").asText("");
+        String video = null;
+        String audio = null;
+        for (JsonNode stream : root.path("streams")) {
+            String type = stream.path("codec_type").asText();
+            String codec = stream.path("codec_name").asText("").toLowerCase(Locale.ROOT);
+            if (video == null && type.equals("video")) {
+                video = codec;
+            } else if (audio == null && type.equals("audio")) {
+                audio = codec;
+            }
+        }
+        return new Probe(container, video, audio);
+    }
+
+    static Plan plan(Probe probe) {
+        boolean copyVideo = probe.videoCodec() == null || COMPATIBLE_VIDEO.contains(probe.videoCodec());
+        boolean copyAudio = probe.audioCodec() == null || COMPATIBLE_AUDIO.contains(probe.audioCodec());
+        // ffprobe báo MP4 là "mov,mp4,m4a,3gp,3g2,mj2"
+        boolean mp4 = List.of(probe.container().split(",")).contains("mp4");
+        if (copyVideo && copyAudio) {
+            return new Plan(mp4 ? Action.KEEP : Action.REMUX, true, true);
+        }
+        return new Plan(Action.TRANSCODE, copyVideo, copyAudio);
+    }
+
+    List<String> command(Plan plan, Path input, Path output, String x264Preset, int x264Crf) {
+        List<String> command = new ArrayList<>(List.of(toolRegistry.path(ToolRegistry.Tool.FFMPEG),
+                "-hide_banner", "-nostdin", "-y", "-i", input.toString()));
+        if (plan.copyVideo()) {
+            command.addAll(List.of("-c:v", "copy"));
+        } else {
+            command.addAll(List.of("-c:v", "libx264", "-preset", x264Preset, "-crf", String.valueOf(x264Crf), "-pix_fmt", "yuv420p"));
+        }
+        if (plan.copyAudio()) {
+            command.addAll(List.of("-c:a", "copy"));
+        } else {
+            command.addAll(List.of("-c:a", "aac", "-b:a", "128k"));
+        }
+        // Output có đuôi .part nên phải chỉ rõ muxer
+        command.addAll(List.of("-movflags", "+faststart", "-f", "mp4", output.toString()));
+        return command;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stage.shutdown();
+    }
+
+    private void run(List<String> command) throws IOException {
+        Path output = Path.of(command.get(command.size() - 1));
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        logger.debug("Executing ffmpeg command: {}", command);
+        Process process = metrics.spawn("ffmpeg", pb);
+        Deque<String> tail = new ArrayDeque<>();
+        try {
+            int exitCode = processPump.run(process, line -> {
+                if (tail.size() == OUTPUT_TAIL_LINES) {
+                    tail.pollFirst();
+                }
+                tail.addLast(line);
+            }, Duration.ofMinutes(timeoutMinutes));
+            if (exitCode != 0) {
+                throw new IOException("ffmpeg exited with code " + exitCode + ": " + String.join("\n", tail));
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        } finally {
+            process.destroy();
+        }
+    }
+}
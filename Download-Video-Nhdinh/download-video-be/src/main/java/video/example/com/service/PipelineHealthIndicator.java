@@ -0,0 +1,36 @@
+package video.example.com.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health "pipeline": số liệu của từng stage tải → transcode (limit/in-flight mỗi platform, hàng đợi và worker ffmpeg).
+ */
+@Component
+public class PipelineHealthIndicator implements HealthIndicator {
+
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final MediaTranscoder mediaTranscoder;
+
+    public PipelineHealthIndicator(VideoTaskExecutor videoTaskExecutor, MediaTranscoder mediaTranscoder) {
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.mediaTranscoder = mediaTranscoder;
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> download = new LinkedHashMap<>();
+        for (Platform platform : Platform.values()) {
+            AdaptiveLimit limit = videoTaskExecutor.limit(platform);
+            download.put(platform.id(), Map.of("limit", limit.limit(), "inFlight", limit.inFlight()));
+        }
+        return Health.up()
+                .withDetail("download", download)
+                .withDetail("transcode", mediaTranscoder.stage().stats())
+                .build();
+    }
+}
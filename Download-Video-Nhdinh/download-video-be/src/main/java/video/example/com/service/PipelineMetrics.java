@@ -0,0 +1,85 @@
+package video.example.com.service;
+
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import video.example.com.util.ProcessPump;
+
+/**
+ * Metric dạng trạng thái của pipeline, đọc lúc scrape: limit/in-flight/hàng đợi tải mỗi platform, stage transcode,
+ * worker yt-dlp rảnh, tiến trình pump đang đọc, kênh SSE đang mở, hit/miss của các cache và byte đã phục vụ.
+ * Metric theo sự kiện (thời gian, retry, fallback) ghi ở {@link VideoMetrics}.
+ */
+@Component
+public class PipelineMetrics implements MeterBinder {
+
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final MediaTranscoder mediaTranscoder;
+    private final YtDlpWorkerPool workerPool;
+    private final SseProgressChannels sseProgressChannels;
+    private final PreviewCache previewCache;
+    private final DownloadCache downloadCache;
+    private final InfoJsonCache infoJsonCache;
+    private final VideoFileServer videoFileServer;
+    private final CdnProxy cdnProxy;
+    private final ProcessPump processPump;
+
+    public PipelineMetrics(VideoTaskExecutor videoTaskExecutor, MediaTranscoder mediaTranscoder, YtDlpWorkerPool workerPool,
+                           SseProgressChannels sseProgressChannels, PreviewCache previewCache, DownloadCache downloadCache,
+                           InfoJsonCache infoJsonCache, VideoFileServer videoFileServer, CdnProxy cdnProxy,
+                           ProcessPump processPump) {
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.mediaTranscoder = mediaTranscoder;
+        this.workerPool = workerPool;
+        this.sseProgressChannels = sseProgressChannels;
+        this.previewCache = previewCache;
+        this.downloadCache = downloadCache;
+        this.infoJsonCache = infoJsonCache;
+        this.videoFileServer = videoFileServer;
+        this.cdnProxy = cdnProxy;
+        this.processPump = processPump;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Platform platform : Platform.values()) {
+            AdaptiveLimit limit = videoTaskExecutor.limit(platform);
+            gauge(registry, "video.executor.limit", limit, AdaptiveLimit::limit, "platform", platform.id());
+            gauge(registry, "video.executor.active", limit, AdaptiveLimit::inFlight, "platform", platform.id());
+            gauge(registry, "video.executor.queued", limit, AdaptiveLimit::waiting, "platform", platform.id());
+            gauge(registry, "ytdlp.workers.idle", workerPool, pool -> pool.idleWorkers(platform), "platform", platform.id());
+        }
+
+        gauge(registry, "video.transcode.workers", mediaTranscoder, t -> t.stage().workers());
+        gauge(registry, "video.transcode.queued", mediaTranscoder, t -> t.stage().stats().queued());
+        gauge(registry, "video.transcode.active", mediaTranscoder, t -> t.stage().stats().running());
+        gauge(registry, "video.sse.open", sseProgressChannels, SseProgressChannels::openCount);
+        gauge(registry, "process.pump.processes", processPump, ProcessPump::active);
+
+        // Cùng tên/tag với metric cache của Micrometer để dashboard tính hit ratio như mọi cache khác
+        cacheGets(registry, "preview", previewCache, PreviewCache::hits, PreviewCache::misses);
+        cacheGets(registry, "download", downloadCache, DownloadCache::hits, DownloadCache::misses);
+        cacheGets(registry, "info-json", infoJsonCache, InfoJsonCache::hits, InfoJsonCache::misses);
+
+        servedBytes(registry, "file", videoFileServer, VideoFileServer::bytesServed);
+        servedBytes(registry, "proxy", cdnProxy, CdnProxy::bytesServed);
+    }
+
+    private static <T> void gauge(MeterRegistry registry, String name, T obj, ToDoubleFunction<T> value, String... tags) {
+        Gauge.builder(name, obj, value).tags(tags).register(registry);
+    }
+
+    private static <T> void cacheGets(MeterRegistry registry, String cache, T obj, ToDoubleFunction<T> hits, ToDoubleFunction<T> misses) {
+        FunctionCounter.builder("cache.gets", obj, hits).tags("cache", cache, "result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", obj, misses).tags("cache", cache, "result", "miss").register(registry);
+    }
+
+    private static <T> void servedBytes(MeterRegistry registry, String source, T obj, ToDoubleFunction<T> bytes) {
+        FunctionCounter.builder("video.served.bytes", obj, bytes).baseUnit("bytes").tag("source", source).register(registry);
+    }
+}
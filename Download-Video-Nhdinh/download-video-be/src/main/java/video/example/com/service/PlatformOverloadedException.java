@@ -0,0 +1,24 @@
+package video.example.com.service;
+
+/**
+ * Platform đã dùng hết limit và hàng đợi; controller trả 429 kèm Retry-After.
+ */
+public class PlatformOverloadedException extends RuntimeException {
+
+    private final Platform platform;
+    private final long retryAfterSeconds;
+
+    public PlatformOverloadedException(Platform platform, long retryAfterSeconds) {
+        super("Too many concurrent " + platform.id() + " requests");
+        this.platform = platform;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Platform getPlatform() {
+        return platform;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
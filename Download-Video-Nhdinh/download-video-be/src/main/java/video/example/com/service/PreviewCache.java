@@ -0,0 +1,166 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache kết quả /preview theo URL chuẩn hoá, có giới hạn kích thước (LRU).
+ * Kết quả thành công và thất bại có TTL riêng; TTL thành công không vượt quá hạn của link CDN đã ký.
+ */
+@Component
+public class PreviewCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewCache.class);
+
+    @FunctionalInterface
+    public interface Loader {
+        ResponseEntity<Map<String, String>> load() throws IOException;
+    }
+
+    @Value("${preview.cache.max.size:1000}")
+    private int maxSize = 1000;
+
+    @Value("${preview.cache.success.ttl.seconds:600}")
+    private long successTtlSeconds = 600;
+
+    @Value("${preview.cache.failure.ttl.seconds:30}")
+    private long failureTtlSeconds = 30;
+
+    // Trừ hao để client còn kịp dùng link trước khi CDN hết hạn
+    @Value("${preview.cache.expiry.margin.seconds:60}")
+    private long expiryMarginSeconds = 60;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+    };
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ResponseEntity<Map<String, String>> get(String key, Loader loader) throws IOException {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    logger.debug("Preview cache hit for {}", key);
+                    hits.increment();
+                    return entry.response;
+                }
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+
+        ResponseEntity<Map<String, String>> response = loader.load();
+        long expiresAt = expiryFor(response, System.currentTimeMillis());
+        if (expiresAt > System.currentTimeMillis()) {
+            synchronized (entries) {
+                entries.put(key, new Entry(response, expiresAt));
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Link video trực tiếp trong kết quả preview còn hạn của {@code key}, null nếu chưa có.
+     */
+    public String videoUrl(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.expiresAt <= System.currentTimeMillis()
+                    || !entry.response.getStatusCode().is2xxSuccessful() || entry.response.getBody() == null) {
+                return null;
+            }
+            String url = entry.response.getBody().get("videoUrl");
+            return url == null || !url.startsWith("https://") ? null : url;
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public void invalidate(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    long expiryFor(ResponseEntity<Map<String, String>> response, long now) {
+        if (response.getStatusCode().is4xxClientError()) {
+            return 0;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            return now + failureTtlSeconds * 1000;
+        }
+        long expiresAt = now + successTtlSeconds * 1000;
+        Map<String, String> body = response.getBody();
+        if (body != null) {
+            for (String field : new String[]{"videoUrl", "thumbnail"}) {
+                long signedExpiry = signedUrlExpiry(body.get(field));
+                if (signedExpiry > 0) {
+                    expiresAt = Math.min(expiresAt, signedExpiry - expiryMarginSeconds * 1000);
+                }
+            }
+        }
+        return expiresAt;
+    }
+
+    /**
+     * Hạn của link CDN đã ký (epoch millis), 0 nếu không có.
+     * fbcdn/cdninstagram dùng {@code oe} (hex giây), tiktokcdn dùng {@code x-expires} (giây).
+     */
+    static long signedUrlExpiry(String url) {
+        if (url == null || url.isEmpty()) {
+            return 0;
+        }
+        String query;
+        try {
+            query = new URI(url).getRawQuery();
+        } catch (URISyntaxException e) {
+            return 0;
+        }
+        if (query == null) {
+            return 0;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String name = param.substring(0, eq);
+            String value = param.substring(eq + 1);
+            try {
+                if (name.equals("oe")) {
+                    return Long.parseLong(value, 16) * 1000;
+                }
+                if (name.equals("x-expires") || name.equals("expire") || name.equals("expires")) {
+                    return Long.parseLong(value) * 1000;
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Unparseable expiry {} in {}", param, url);
+            }
+        }
+        return 0;
+    }
+
+    private record Entry(ResponseEntity<Map<String, String>> response, long expiresAt) {
+    }
+}
@@ -0,0 +1,17 @@
+package video.example.com.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import video.example.com.util.ProcessPump;
+
+@Configuration
+public class ProcessPumpConfig {
+
+    // Vài thread đọc output cho mọi tiến trình yt-dlp/ffmpeg, không tăng theo số lượt tải đồng thời
+    @Bean(destroyMethod = "close")
+    public ProcessPump processPump(@Value("${process.pump.threads:2}") int threads) {
+        return new ProcessPump(threads);
+    }
+}
@@ -0,0 +1,291 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Pool proxy dùng chung cho mọi extractor. Cấu hình {@code proxy.pool=http://a:8080|3,socks5://b:1080}
+ * (sau {@code |} là trọng số, mặc định 1); để trống thì dùng {@code tiktok.proxy} như trước.
+ * <p>
+ * Chọn proxy theo random có trọng số: trọng số cấu hình × điểm sức khoẻ (EWMA tỉ lệ thành công)
+ * × hệ số độ trễ (proxy nhanh nhất / proxy này). Mỗi platform giữ proxy đã chọn trong {@code proxy.sticky.ms}
+ * để cookie/phiên của upstream không đổi IP liên tục. Lỗi liên tiếp đủ {@code proxy.quarantine.failures} lần thì
+ * proxy bị cách ly, thời gian cách ly tăng gấp đôi mỗi lần; hết hạn thì job probe thử kết nối TCP để đưa lại vào pool.
+ */
+@Component
+public class ProxyPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyPool.class);
+
+    private static final double SCORE_SMOOTHING = 0.2;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final double MIN_SCORE = 0.05;
+    private static final int MAX_QUARANTINE_DOUBLINGS = 6;
+
+    public record View(String url, int weight, boolean quarantined, double score, double latencyMs, long successes, long failures) {
+    }
+
+    /**
+     * Một proxy trong pool. Trạng thái sức khoẻ được đọc/ghi dưới lock của pool.
+     */
+    public static final class Proxy {
+        private final String url;
+        private final String host;
+        private final int port;
+        private final int weight;
+        private double score = 1.0;
+        private double latencyMs = -1;
+        private int consecutiveFailures;
+        private int quarantines;
+        private long quarantinedUntil;
+        private boolean quarantined;
+        private long successes;
+        private long failures;
+
+        Proxy(String url, String host, int port, int weight) {
+            this.url = url;
+            this.host = host;
+            this.port = port;
+            this.weight = weight;
+        }
+
+        public String url() {
+            return url;
+        }
+    }
+
+    private record Sticky(Proxy proxy, long until) {
+    }
+
+    @Value("${proxy.pool:}")
+    private String poolSpec = "";
+
+    @Value("${tiktok.proxy:}")
+    private String legacyProxy = "";
+
+    @Value("${proxy.sticky.ms:60000}")
+    private long stickyMs = 60000;
+
+    @Value("${proxy.quarantine.failures:3}")
+    private int quarantineFailures = 3;
+
+    @Value("${proxy.quarantine.ms:30000}")
+    private long quarantineMs = 30000;
+
+    @Value("${proxy.probe.timeout.ms:3000}")
+    private int probeTimeoutMs = 3000;
+
+    private List<Proxy> proxies = List.of();
+    private final Map<Platform, Sticky> sticky = new EnumMap<>(Platform.class);
+
+    public ProxyPool() {
+    }
+
+    ProxyPool(String poolSpec, long stickyMs, int quarantineFailures, long quarantineMs) {
+        this.poolSpec = poolSpec;
+        this.stickyMs = stickyMs;
+        this.quarantineFailures = quarantineFailures;
+        this.quarantineMs = quarantineMs;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        String spec = poolSpec == null || poolSpec.isBlank() ? legacyProxy : poolSpec;
+        List<Proxy> parsed = new ArrayList<>();
+        if (spec != null) {
+            for (String entry : spec.split(",")) {
+                Proxy proxy = parse(entry.trim());
+                if (proxy != null) {
+                    parsed.add(proxy);
+                }
+            }
+        }
+        proxies = List.copyOf(parsed);
+        if (!proxies.isEmpty()) {
+            logger.info("Proxy pool initialised with {} proxies", proxies.size());
+        }
+    }
+
+    private static Proxy parse(String entry) {
+        if (entry.isEmpty()) {
+            return null;
+        }
+        int weight = 1;
+        String url = entry;
+        int bar = entry.lastIndexOf('|');
+        if (bar > 0) {
+            url = entry.substring(0, bar).trim();
+            try {
+                weight = Math.max(1, Integer.parseInt(entry.substring(bar + 1).trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid proxy weight in '{}', using 1", entry);
+            }
+        }
+        try {
+            URI uri = new URI(url);
+            if (uri.getHost() == null || uri.getPort() <= 0) {
+                logger.warn("Invalid proxy URL (host and port required): {}", url);
+                return null;
+            }
+            return new Proxy(url, uri.getHost(), uri.getPort(), weight);
+        } catch (URISyntaxException e) {
+            logger.warn("Invalid proxy URL: {}, error: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isEmpty() {
+        return proxies.isEmpty();
+    }
+
+    /**
+     * Chọn proxy cho một lần gọi của {@code platform}, bỏ qua các proxy trong {@code exclude}
+     * (đã lỗi ở lần thử trước của cùng request). Trả null khi pool trống hoặc không còn proxy khoẻ, tức đi thẳng.
+     */
+    public Proxy select(Platform platform, Set<String> exclude) {
+        return select(platform, exclude, ThreadLocalRandom.current().nextDouble());
+    }
+
+    synchronized Proxy select(Platform platform, Set<String> exclude, double random) {
+        if (proxies.isEmpty()) {
+            return null;
+        }
+        long now = System.nanoTime();
+        Sticky current = sticky.get(platform);
+        if (current != null && now - current.until() < 0 && !current.proxy().quarantined
+                && !exclude.contains(current.proxy().url)) {
+            return current.proxy();
+        }
+
+        double fastest = Double.MAX_VALUE;
+        List<Proxy> candidates = new ArrayList<>();
+        for (Proxy proxy : proxies) {
+            if (!proxy.quarantined && !exclude.contains(proxy.url)) {
+                candidates.add(proxy);
+                if (proxy.latencyMs > 0) {
+                    fastest = Math.min(fastest, proxy.latencyMs);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            sticky.remove(platform);
+            return null;
+        }
+        double[] weights = new double[candidates.size()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            Proxy proxy = candidates.get(i);
+            double latencyFactor = proxy.latencyMs > 0 && fastest < Double.MAX_VALUE ? fastest / proxy.latencyMs : 1.0;
+            weights[i] = proxy.weight * Math.max(MIN_SCORE, proxy.score) * latencyFactor;
+            total += weights[i];
+        }
+        double target = random * total;
+        Proxy chosen = candidates.get(candidates.size() - 1);
+        for (int i = 0; i < weights.length; i++) {
+            target -= weights[i];
+            if (target < 0) {
+                chosen = candidates.get(i);
+                break;
+            }
+        }
+        sticky.put(platform, new Sticky(chosen, now + TimeUnit.MILLISECONDS.toNanos(stickyMs)));
+        return chosen;
+    }
+
+    /**
+     * Ghi kết quả một lần gọi qua {@code proxy}. {@code latencyMs} âm nghĩa là không có số đo độ trễ.
+     */
+    public synchronized void record(Proxy proxy, long latencyMs, boolean success) {
+        if (success) {
+            proxy.successes++;
+            proxy.consecutiveFailures = 0;
+            proxy.score += SCORE_SMOOTHING * (1.0 - proxy.score);
+            if (latencyMs >= 0) {
+                proxy.latencyMs = proxy.latencyMs < 0 ? latencyMs : proxy.latencyMs + LATENCY_SMOOTHING * (latencyMs - proxy.latencyMs);
+            }
+            return;
+        }
+        proxy.failures++;
+        proxy.consecutiveFailures++;
+        proxy.score -= SCORE_SMOOTHING * proxy.score;
+        if (!proxy.quarantined && proxy.consecutiveFailures >= quarantineFailures) {
+            quarantine(proxy);
+        }
+    }
+
+    private void quarantine(Proxy proxy) {
+        long duration = quarantineMs << Math.min(proxy.quarantines, MAX_QUARANTINE_DOUBLINGS);
+        proxy.quarantines++;
+        proxy.quarantined = true;
+        proxy.quarantinedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+        logger.warn("Proxy {} quarantined for {} ms after {} consecutive failures", proxy.url, duration, proxy.consecutiveFailures);
+    }
+
+    /**
+     * Thử kết nối TCP tới các proxy đã hết hạn cách ly: kết nối được thì đưa lại vào pool với điểm trung bình,
+     * không được thì cách ly tiếp (thời gian gấp đôi).
+     */
+    @Scheduled(fixedDelayString = "${proxy.probe.interval.ms:10000}")
+    public void probeQuarantined() {
+        List<Proxy> due = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Proxy proxy : proxies) {
+                if (proxy.quarantined && now - proxy.quarantinedUntil >= 0) {
+                    due.add(proxy);
+                }
+            }
+        }
+        for (Proxy proxy : due) {
+            boolean reachable = probe(proxy);
+            synchronized (this) {
+                if (reachable) {
+                    proxy.quarantined = false;
+                    proxy.consecutiveFailures = 0;
+                    proxy.score = 0.5;
+                    logger.info("Proxy {} recovered", proxy.url);
+                } else {
+                    quarantine(proxy);
+                }
+            }
+        }
+    }
+
+    private boolean probe(Proxy proxy) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(proxy.host, proxy.port), probeTimeoutMs);
+            return true;
+        } catch (IOException e) {
+            logger.debug("Proxy {} probe failed: {}", proxy.url, e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized List<View> snapshot() {
+        List<View> views = new ArrayList<>(proxies.size());
+        for (Proxy proxy : proxies) {
+            views.add(new View(proxy.url, proxy.weight, proxy.quarantined, proxy.score, proxy.latencyMs, proxy.successes, proxy.failures));
+        }
+        return Collections.unmodifiableList(views);
+    }
+}
@@ -0,0 +1,280 @@
+package video.example.com.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import video.example.com.util.ProgressEvent;
+import video.example.com.util.StallWatchdog;
+
+/**
+ * Tải thẳng link MP4 đã resolve (từ /preview) bằng {@link HttpClient}, không chạy lại yt-dlp:
+ * chia file thành {@code direct.download.parts} khoảng byte tải song song, ghi theo vị trí vào một
+ * {@link FileChannel} đã cấp phát trước, khoảng nào lỗi thì tải tiếp từ byte đã nhận.
+ * Server không hỗ trợ Range thì tải một luồng.
+ */
+@Component
+public class RangedDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(RangedDownloader.class);
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
+    @Value("${direct.download.parts:4}")
+    private int parts = 4;
+
+    // Khoảng nhỏ hơn mức này không đáng mở thêm kết nối
+    @Value("${direct.download.min.part.kb:1024}")
+    private long minPartKb = 1024;
+
+    @Value("${direct.download.range.retries:3}")
+    private int rangeRetries = 3;
+
+    // Timeout chờ header, cũng là thời gian tối đa không nhận được byte nào của body
+    @Value("${direct.download.timeout.seconds:30}")
+    private long timeoutSeconds = 30;
+
+    private final HttpClient httpClient;
+
+    public RangedDownloader() {
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    RangedDownloader(int parts, long minPartKb, int rangeRetries, long timeoutSeconds) {
+        this();
+        this.parts = parts;
+        this.minPartKb = minPartKb;
+        this.rangeRetries = rangeRetries;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    record Range(int index, long start, long end) {
+    }
+
+    /**
+     * Tải {@code url} thành {@code outputDir/fileName}. File chỉ xuất hiện khi đã đủ byte; lỗi thì xoá phần dở.
+     */
+    public String download(String url, File outputDir, String fileName, Consumer<ProgressEvent> progressCallback) throws IOException {
+        URI uri = URI.create(url);
+        Path target = outputDir.toPath().resolve(fileName);
+        Path partial = target.resolveSibling(fileName + ".part");
+        long total = probeLength(uri);
+        Progress progress = new Progress(total, progressCallback);
+
+        boolean success = false;
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (total > 0) {
+                // Cấp phát trước để các khoảng ghi theo vị trí không phải nới file liên tục
+                channel.write(ByteBuffer.allocate(1), total - 1);
+                fetchRanges(uri, channel, split(total), progress);
+            } else {
+                fetchRange(uri, channel, null, progress);
+            }
+            channel.force(false);
+            success = true;
+        } finally {
+            if (!success) {
+                Files.deleteIfExists(partial);
+            }
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Direct download of {} bytes finished: {}", progress.downloaded.get(), target);
+        return target.toString();
+    }
+
+    /**
+     * Độ dài file nếu server hỗ trợ Range, -1 nếu không (khi đó tải một luồng).
+     * Body được đóng ngay: server bỏ qua Range và trả 200 thì không đọc cả file chỉ để probe.
+     */
+    private long probeLength(URI uri) throws IOException {
+        HttpResponse<InputStream> response = send(request(uri).header("Range", "bytes=0-0").build(), HttpResponse.BodyHandlers.ofInputStream());
+        response.body().close();
+        if (response.statusCode() == 206) {
+            Matcher m = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+            if (m.matches()) {
+                return Long.parseLong(m.group(1));
+            }
+        } else if (response.statusCode() != 200) {
+            throw new IOException("Direct download failed with HTTP " + response.statusCode());
+        }
+        return -1;
+    }
+
+    List<Range> split(long total) {
+        long minPart = Math.max(1, minPartKb * 1024);
+        int count = (int) Math.max(1, Math.min(parts, (total + minPart - 1) / minPart));
+        long size = (total + count - 1) / count;
+        List<Range> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            ranges.add(new Range(i, start, Math.min(total, start + size) - 1));
+        }
+        return ranges;
+    }
+
+    private void fetchRanges(URI uri, FileChannel channel, List<Range> ranges, Progress progress) throws IOException {
+        if (ranges.size() == 1) {
+            fetchRange(uri, channel, ranges.get(0), progress);
+            return;
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Range range : ranges) {
+                futures.add(executor.submit(() -> {
+                    fetchRange(uri, channel, range, progress);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during direct download", e);
+        }
+    }
+
+    /**
+     * Tải một khoảng ({@code range} null = cả file không Range). Lỗi giữa chừng thì tải tiếp từ byte đã ghi.
+     */
+    private void fetchRange(URI uri, FileChannel channel, Range range, Progress progress) throws IOException {
+        long position = range == null ? 0 : range.start();
+        for (int attempt = 1; ; attempt++) {
+            HttpRequest.Builder request = request(uri);
+            if (range != null) {
+                request.header("Range", "bytes=" + position + "-" + range.end());
+            }
+            try {
+                HttpResponse<InputStream> response = send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+                int expected = range == null ? 200 : 206;
+                if (response.statusCode() != expected) {
+                    response.body().close();
+                    throw new IOException("Unexpected HTTP " + response.statusCode() + " for range " + describe(range, position));
+                }
+                // Server ngừng gửi giữa chừng thì đóng stream để nhánh thử lại tải tiếp từ byte đã nhận
+                try (InputStream in = StallWatchdog.guard(response.body(), Duration.ofSeconds(timeoutSeconds))) {
+                    position = copy(in, channel, position, progress);
+                }
+                if (range != null && position <= range.end()) {
+                    throw new IOException("Range " + describe(range, position) + " ended early");
+                }
+                return;
+            } catch (IOException e) {
+                if (attempt > rangeRetries || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                logger.warn("Range {} attempt {} failed, resuming at {}: {}", describe(range, position), attempt, position, e.getMessage());
+                if (range == null) {
+                    // Không có Range thì không tải tiếp được, bắt đầu lại từ đầu
+                    progress.add(-position);
+                    position = 0;
+                    channel.truncate(0);
+                }
+            }
+        }
+    }
+
+    private static long copy(InputStream in, FileChannel channel, long position, Progress progress) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+                position += channel.write(chunk, position);
+            }
+            progress.add(read);
+        }
+        return position;
+    }
+
+    private static String describe(Range range, long position) {
+        return range == null ? "full@" + position : "#" + range.index() + " " + position + "-" + range.end();
+    }
+
+    private HttpRequest.Builder request(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .header("User-Agent", USER_AGENT);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during direct download", e);
+        }
+    }
+
+    /**
+     * Gộp byte của mọi khoảng thành một {@link ProgressEvent}; chỉ báo khi phần trăm nguyên thay đổi.
+     */
+    private static final class Progress {
+        private final long total;
+        private final Consumer<ProgressEvent> callback;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong downloaded = new AtomicLong();
+        private int lastPercent = -1;
+
+        private Progress(long total, Consumer<ProgressEvent> callback) {
+            this.total = total;
+            this.callback = callback;
+        }
+
+        void add(long bytes) {
+            long done = downloaded.addAndGet(bytes);
+            if (callback == null || total <= 0) {
+                return;
+            }
+            int percent = (int) (done * 100 / total);
+            synchronized (this) {
+                if (percent <= lastPercent) {
+                    return;
+                }
+                lastPercent = percent;
+                long elapsedMs = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+                long speed = done * 1000 / elapsedMs;
+                int eta = speed > 0 ? (int) ((total - done) / speed) : -1;
+                callback.accept(new ProgressEvent(done * 100.0 / total, done, total, speed, eta, -1, -1));
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import video.example.com.util.YtDlpException;
+
+/**
+ * Chính sách thử lại dùng chung cho mọi lần gọi yt-dlp/upstream:
+ * backoff luỹ thừa có jitter, phân loại lỗi nên thử lại hay lỗi của chính video (thử lại vô ích),
+ * circuit breaker cho từng platform để fail-fast khi upstream đang sập, và xoay proxy qua {@link ProxyPool}.
+ */
+@Component
+public class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    // Rate limit luôn thử lại, kể cả khi đi kèm chữ của lỗi cố định:
+    // Instagram báo chung "rate-limit reached or login required".
+    private static final String[] RATE_LIMIT_MARKERS = {
+            "http error 429", "too many requests", "rate-limit", "rate limit"
+    };
+
+    // Lỗi tạm thời: mạng, upstream 5xx. Chỉ xét sau danh sách lỗi cố định vì các marker này rộng
+    // ("Unable to download webpage: HTTP Error 404" hay "timeout" trong thông báo 410 vẫn là lỗi cố định).
+    private static final String[] RETRYABLE_MARKERS = {
+            "timed out", "timeout", "connection reset", "connection refused", "connection aborted", "remote end closed",
+            "temporary failure", "unable to download webpage", "http error 5", "[ssl", "eof occurred"
+    };
+
+    // Lỗi của chính video hoặc URL: thử lại hay đổi proxy cũng không khác
+    private static final String[] FATAL_MARKERS = {
+            "unsupported url", "private video", "video unavailable", "this video is unavailable",
+            "has been removed", "http error 404", "http error 410", "login required", "requires login",
+            "not available in your country", "no video formats found", "is not a valid url"
+    };
+
+    // Lỗi do proxy hoặc IP của proxy bị chặn: đổi proxy ở lần sau và trừ điểm proxy, không trừ platform
+    private static final String[] PROXY_MARKERS = {
+            "proxy", "http error 407", "tunnel connection failed", "connection refused", "http error 403",
+            "http error 429", "too many requests"
+    };
+
+    @FunctionalInterface
+    public interface Attempt<T> {
+        /**
+         * @param attempt lần thử, bắt đầu từ 1
+         * @param proxy proxy dùng cho lần này, chuỗi rỗng nếu đi thẳng
+         */
+        T run(int attempt, String proxy) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RetryListener {
+        void onRetry(int attempt, IOException error, long delayMs);
+    }
+
+    @Value("${retry.max.attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${retry.backoff.initial.ms:1000}")
+    private long initialBackoffMs = 1000;
+
+    @Value("${retry.backoff.max.ms:10000}")
+    private long maxBackoffMs = 10000;
+
+    @Value("${breaker.failure.threshold:5}")
+    private int failureThreshold = 5;
+
+    @Value("${breaker.open.ms:30000}")
+    private long openMs = 30000;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final ProxyPool proxyPool;
+    private final VideoMetrics metrics;
+
+    public RetryPolicy(ProxyPool proxyPool, VideoMetrics metrics) {
+        this.proxyPool = proxyPool;
+        this.metrics = metrics;
+    }
+
+    public <T> T execute(Platform platform, Attempt<T> call) throws IOException {
+        return execute(platform, call, null);
+    }
+
+    /**
+     * Chạy {@code call} tối đa {@code retry.max.attempts} lần, mỗi lần qua một proxy lấy từ {@link ProxyPool}
+     * (lần thử lại tránh proxy vừa lỗi; hết proxy khoẻ thì đi thẳng).
+     * Lỗi có dấu hiệu do proxy (407, 403/429 do IP bị chặn, không kết nối được) tính cho proxy;
+     * còn lại tính cho breaker của platform.
+     *
+     * @throws CircuitOpenException nếu breaker của platform đang mở
+     */
+    public <T> T execute(Platform platform, Attempt<T> call, RetryListener listener) throws IOException {
+        CircuitBreaker platformBreaker = breaker(platform.id());
+        Set<String> failedProxies = new HashSet<>();
+        for (int attempt = 1; ; attempt++) {
+            if (!platformBreaker.tryAcquire()) {
+                throw new CircuitOpenException(platformBreaker.name(), platformBreaker.retryAfterSeconds());
+            }
+            ProxyPool.Proxy proxy = proxyPool.select(platform, failedProxies);
+            long start = System.nanoTime();
+            try {
+                T result = call.run(attempt, proxy != null ? proxy.url() : "");
+                platformBreaker.onSuccess();
+                if (proxy != null) {
+                    proxyPool.record(proxy, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+                }
+                return result;
+            } catch (IOException e) {
+                if (!isRetryable(e)) {
+                    platformBreaker.onIgnored();
+                    logger.warn("{} attempt {} failed with non-retryable error: {}", platform.id(), attempt, e.getMessage());
+                    throw e;
+                }
+                if (proxy != null) {
+                    failedProxies.add(proxy.url());
+                }
+                boolean proxyError = proxy != null && isProxyError(e);
+                if (proxyError) {
+                    proxyPool.record(proxy, -1, false);
+                    platformBreaker.onIgnored();
+                } else {
+                    platformBreaker.onFailure();
+                }
+                if (attempt >= maxAttempts) {
+                    logger.warn("{} failed after {} attempts: {}", platform.id(), attempt, e.getMessage());
+                    throw e;
+                }
+                long delay = backoffMillis(attempt, initialBackoffMs, maxBackoffMs, ThreadLocalRandom.current().nextDouble());
+                logger.warn("{} attempt {} failed, retrying in {} ms: {}", platform.id(), attempt, delay, e.getMessage());
+                metrics.retry(platform, proxyError ? "proxy" : "platform");
+                if (listener != null) {
+                    listener.onRetry(attempt, e, delay);
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting to retry", ie);
+                }
+            } catch (RuntimeException e) {
+                platformBreaker.onIgnored();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Backoff luỹ thừa với "equal jitter": một nửa cố định, một nửa ngẫu nhiên, để các request lỗi cùng lúc
+     * không thử lại cùng lúc mà vẫn luôn có khoảng chờ tối thiểu.
+     */
+    static long backoffMillis(int attempt, long initialMs, long maxMs, double random) {
+        long exp = initialMs << Math.min(attempt - 1, 20);
+        long capped = Math.min(maxMs, exp < 0 ? maxMs : exp);
+        long half = capped / 2;
+        return half + (long) (random * (capped - half));
+    }
+
+    /**
+     * Lỗi tạm thời (mạng, rate limit, upstream 5xx, lỗi chưa rõ) thì nên thử lại;
+     * lỗi của video/URL, thiếu yt-dlp hay sai tham số thì không.
+     */
+    static boolean isRetryable(IOException e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        String text = (e instanceof YtDlpException ytDlp ? errorLines(ytDlp.getOutput()) + ytDlp.getMessage()
+                : String.valueOf(e.getMessage())).toLowerCase(Locale.ROOT);
+        for (String marker : RATE_LIMIT_MARKERS) {
+            if (text.contains(marker)) {
+                return true;
+            }
+        }
+        for (String marker : FATAL_MARKERS) {
+            if (text.contains(marker)) {
+                return false;
+            }
+        }
+        for (String marker : RETRYABLE_MARKERS) {
+            if (text.contains(marker)) {
+                return true;
+            }
+        }
+        if (e instanceof YtDlpException ytDlp) {
+            // Exit code 2: yt-dlp báo sai tham số dòng lệnh
+            return ytDlp.getExitCode() != 2;
+        }
+        return !text.contains("executable not found") && !text.contains("cannot run program");
+    }
+
+    /**
+     * Lỗi có khả năng do chính proxy: proxy từ chối/không kết nối được, hoặc IP của proxy bị upstream chặn.
+     */
+    static boolean isProxyError(IOException e) {
+        String text = (e instanceof YtDlpException ytDlp ? errorLines(ytDlp.getOutput()) + ytDlp.getMessage()
+                : String.valueOf(e.getMessage())).toLowerCase(Locale.ROOT);
+        for (String marker : PROXY_MARKERS) {
+            if (text.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Chỉ xét dòng ERROR: output --verbose có nhiều dòng debug dễ khớp nhầm
+    private static String errorLines(String output) {
+        StringBuilder errors = new StringBuilder();
+        for (String line : output.split("\n")) {
+            if (line.contains("ERROR")) {
+                errors.append(line).append('\n');
+            }
+        }
+        return errors.toString();
+    }
+
+    public CircuitBreaker breaker(String name) {
+        return breakers.computeIfAbsent(name, n -> new CircuitBreaker(n, failureThreshold, openMs));
+    }
+
+    /**
+     * Fail-fast trước khi nhận request mới khi breaker của platform đang mở.
+     */
+    public void checkAvailable(Platform platform) {
+        CircuitBreaker breaker = breakers.get(platform.id());
+        if (breaker != null && breaker.isOpen()) {
+            throw new CircuitOpenException(breaker.name(), breaker.retryAfterSeconds());
+        }
+    }
+}
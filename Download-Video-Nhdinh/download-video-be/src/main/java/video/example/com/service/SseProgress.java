@@ -0,0 +1,44 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.util.ProgressEvent;
+
+/**
+ * Gửi một ProgressEvent qua SSE: message mặc định "PROGRESS_n" (frontend cũ vẫn đọc được)
+ * kèm event "progress" dạng JSON có bytes, speed, ETA, fragment. Cả hai đi trong một lần flush.
+ */
+public final class SseProgress {
+
+    public static final String EVENT_NAME = "progress";
+
+    private SseProgress() {
+    }
+
+    public static void send(SseEmitter emitter, ProgressEvent event) throws IOException {
+        send(emitter, event, null);
+    }
+
+    /**
+     * Như trên, gắn thêm id cho cả hai event để client gửi lại qua Last-Event-ID khi kết nối lại.
+     */
+    public static void send(SseEmitter emitter, ProgressEvent event, String id) throws IOException {
+        SseEmitter.SseEventBuilder legacy = SseEmitter.event();
+        SseEmitter.SseEventBuilder structured = SseEmitter.event().name(EVENT_NAME);
+        if (id != null) {
+            legacy.id(id);
+            structured.id(id);
+        }
+        legacy.data(event.legacyMessage());
+        structured.data(event, MediaType.APPLICATION_JSON);
+        Set<DataWithMediaType> items = new LinkedHashSet<>(legacy.build());
+        items.addAll(structured.build());
+        emitter.send(items);
+    }
+}
@@ -0,0 +1,174 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.util.ProgressEvent;
+
+/**
+ * Kênh SSE cho một emitter: thread tải chỉ đặt dữ liệu vào hàng đợi, một virtual thread riêng ghi ra client.
+ * Progress trùng giá trị bị bỏ, progress dồn lại chỉ giữ bản mới nhất và gửi tối đa một lần mỗi {@code minIntervalMs}.
+ * Message (DONE_, ERROR_, FALLBACK_) luôn được gửi, sau progress đang chờ.
+ */
+public final class SseProgressChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseProgressChannel.class);
+    private static final SseEmitter.SseEventBuilder CLOSE = SseEmitter.event();
+    // Số kênh có thread ghi còn chạy, tức emitter chưa complete/ngắt
+    private static final AtomicInteger OPEN = new AtomicInteger();
+
+    /**
+     * Cách ghi một progress ra emitter; mặc định là {@link SseProgress#send}.
+     */
+    @FunctionalInterface
+    public interface ProgressWriter {
+        void write(SseEmitter emitter, ProgressEvent event) throws IOException;
+    }
+
+    private final SseEmitter emitter;
+    private final ProgressWriter writer;
+    private final long minIntervalNanos;
+    private final BlockingQueue<SseEmitter.SseEventBuilder> messages;
+    private final AtomicReference<ProgressEvent> pendingProgress = new AtomicReference<>();
+    private final Semaphore signal = new Semaphore(0);
+    private volatile boolean closed;
+    private volatile boolean closing;
+    private volatile double lastPercent = -1;
+
+    SseProgressChannel(SseEmitter emitter, long minIntervalMs, int queueCapacity) {
+        this(emitter, SseProgress::send, minIntervalMs, queueCapacity);
+    }
+
+    SseProgressChannel(SseEmitter emitter, ProgressWriter writer, long minIntervalMs, int queueCapacity) {
+        this.emitter = emitter;
+        this.writer = writer;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMs);
+        this.messages = new ArrayBlockingQueue<>(queueCapacity);
+        OPEN.incrementAndGet();
+        Thread.ofVirtual().name("sse-progress").start(this::run);
+    }
+
+    static int openCount() {
+        return OPEN.get();
+    }
+
+    public SseEmitter emitter() {
+        return emitter;
+    }
+
+    public void progress(ProgressEvent event) {
+        if (closed || event.percent() == lastPercent) {
+            return;
+        }
+        lastPercent = event.percent();
+        pendingProgress.set(event);
+        signal.release();
+    }
+
+    public void send(String data) {
+        enqueue(SseEmitter.event().data(data));
+    }
+
+    /**
+     * Gửi event dựng sẵn (có id/name), cùng thứ tự với các message khác.
+     */
+    public void send(SseEmitter.SseEventBuilder event) {
+        enqueue(event);
+    }
+
+    /**
+     * Gửi hết progress và message còn chờ rồi complete emitter.
+     */
+    public void close() {
+        if (closed || closing) {
+            return;
+        }
+        closing = true;
+        offer(CLOSE);
+    }
+
+    /**
+     * Client đã ngắt hoặc emitter đã timeout/complete: dừng thread ghi ngay, bỏ phần còn chờ.
+     * Gọi từ callback onCompletion/onTimeout/onError của emitter.
+     */
+    public void disconnect() {
+        closed = true;
+        signal.release();
+    }
+
+    /**
+     * Không bao giờ chặn người gửi (thread tải, pump, batch runner): hàng đợi đầy vì client chậm thì bỏ message
+     * cũ nhất. Progress không nằm trong hàng đợi (bản mới nhất luôn thắng), còn message kết thúc luôn là cái
+     * mới nhất, ngay trước CLOSE, nên không bị bỏ.
+     */
+    private void enqueue(SseEmitter.SseEventBuilder event) {
+        if (closed || closing) {
+            return;
+        }
+        offer(event);
+    }
+
+    private void offer(SseEmitter.SseEventBuilder event) {
+        while (!messages.offer(event)) {
+            if (messages.poll() != null) {
+                logger.debug("SSE client is slow, dropping oldest queued message");
+            }
+        }
+        signal.release();
+    }
+
+    private void run() {
+        long nextProgressAt = 0;
+        try {
+            while (!closed) {
+                SseEmitter.SseEventBuilder message = messages.poll();
+                if (message != null) {
+                    ProgressEvent progress = pendingProgress.getAndSet(null);
+                    if (progress != null) {
+                        writer.write(emitter, progress);
+                    }
+                    if (message == CLOSE) {
+                        closed = true;
+                        emitter.complete();
+                        return;
+                    }
+                    emitter.send(message);
+                    continue;
+                }
+
+                ProgressEvent progress = pendingProgress.getAndSet(null);
+                if (progress != null) {
+                    long wait = nextProgressAt - System.nanoTime();
+                    if (wait > 0) {
+                        // Trả lại chỗ nếu chưa có bản mới hơn, chờ đến lượt hoặc tới khi có message
+                        pendingProgress.compareAndSet(null, progress);
+                        signal.tryAcquire(wait, TimeUnit.NANOSECONDS);
+                        continue;
+                    }
+                    writer.write(emitter, progress);
+                    nextProgressAt = System.nanoTime() + minIntervalNanos;
+                    continue;
+                }
+
+                signal.acquire();
+            }
+        } catch (IOException | IllegalStateException e) {
+            closed = true;
+            logger.warn("Client disconnected, dropping SSE channel: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            closed = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            OPEN.decrementAndGet();
+        }
+    }
+}
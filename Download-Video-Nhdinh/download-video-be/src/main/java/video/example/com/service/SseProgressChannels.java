@@ -0,0 +1,30 @@
+package video.example.com.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Component
+public class SseProgressChannels {
+
+    @Value("${sse.progress.min.interval.ms:250}")
+    private long minIntervalMs = 250;
+
+    @Value("${sse.progress.queue.capacity:16}")
+    private int queueCapacity = 16;
+
+    public SseProgressChannel open(SseEmitter emitter) {
+        return new SseProgressChannel(emitter, minIntervalMs, queueCapacity);
+    }
+
+    public SseProgressChannel open(SseEmitter emitter, SseProgressChannel.ProgressWriter writer) {
+        return new SseProgressChannel(emitter, writer, minIntervalMs, queueCapacity);
+    }
+
+    /**
+     * Số kênh SSE đang mở trên toàn server.
+     */
+    public int openCount() {
+        return SseProgressChannel.openCount();
+    }
+}
@@ -0,0 +1,357 @@
+package video.example.com.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Quản lý thư mục chứa file đã tải: {@code storage.dir/ab/cd/...} chia shard theo hash của key video,
+ * giữ tổng dung lượng dưới {@code storage.quota.mb} bằng cách xoá file lâu chưa dùng nhất (LRU),
+ * và sweep định kỳ để xoá file không ai dùng quá {@code storage.max.idle.minutes} cùng file tạm mồ côi.
+ * File đang được phục vụ hoặc đang nén ZIP được {@link #pin ghim} và không bị xoá.
+ */
+@Component
+public class StorageManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageManager.class);
+
+    // Sau khi vượt quota thì xoá xuống còn 90% để không phải evict lại ngay ở lần tải sau
+    private static final double QUOTA_LOW_WATERMARK = 0.9;
+
+    // Đuôi file dở dang của yt-dlp/ffmpeg; quá {@code storage.orphan.minutes} mà không đổi thì coi là rác
+    private static final List<String> PARTIAL_SUFFIXES = List.of(".part", ".ytdl", ".temp", ".tmp");
+
+    /**
+     * Giữ một file không bị xoá cho tới khi {@link #close()}.
+     */
+    public interface Lease extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class Entry {
+        private long size;
+        private long lastAccess;
+
+        private Entry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    @Value("${storage.dir:${java.io.tmpdir}/video-download/files}")
+    private String dir;
+
+    @Value("${storage.quota.mb:10240}")
+    private long quotaMb = 10240;
+
+    @Value("${storage.min.free.mb:1024}")
+    private long minFreeMb = 1024;
+
+    @Value("${storage.max.idle.minutes:720}")
+    private long maxIdleMinutes = 720;
+
+    @Value("${storage.orphan.minutes:60}")
+    private long orphanMinutes = 60;
+
+    private Path root;
+    private long quotaBytes;
+    private long minFreeBytes;
+    private long maxIdleMs;
+    private long orphanMs;
+
+    // Thứ tự truy cập: phần tử đầu là file lâu chưa dùng nhất
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Path, Integer> pins = new HashMap<>();
+    private long usedBytes;
+
+    public StorageManager() {
+    }
+
+    StorageManager(Path root, long quotaBytes, long minFreeBytes, long maxIdleMs, long orphanMs) {
+        this.root = root;
+        this.quotaBytes = quotaBytes;
+        this.minFreeBytes = minFreeBytes;
+        this.maxIdleMs = maxIdleMs;
+        this.orphanMs = orphanMs;
+        open();
+    }
+
+    @PostConstruct
+    void init() {
+        root = Path.of(dir);
+        quotaBytes = quotaMb * 1024 * 1024;
+        minFreeBytes = minFreeMb * 1024 * 1024;
+        maxIdleMs = maxIdleMinutes * 60_000;
+        orphanMs = orphanMinutes * 60_000;
+        open();
+    }
+
+    /**
+     * Tạo thư mục gốc và nạp lại các file còn lại từ lần chạy trước, cũ nhất đứng đầu hàng LRU.
+     */
+    private void open() {
+        root = root.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create storage dir " + root, e);
+        }
+        List<Path> files = listFiles();
+        files.sort(Comparator.comparingLong(StorageManager::lastModified));
+        synchronized (this) {
+            for (Path file : files) {
+                if (!isPartial(file)) {
+                    index(file, lastModified(file));
+                }
+            }
+        }
+        logger.info("Storage {} opened with {} files, {} MB used", root, entries.size(), usedBytes / (1024 * 1024));
+        enforceQuota();
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    /**
+     * Thư mục shard cho video {@code key}. Kiểm tra dung lượng trống trước khi cho tải:
+     * thiếu thì evict, vẫn thiếu thì ném IOException thay vì để yt-dlp ghi tới khi đầy đĩa.
+     */
+    public File directoryFor(String key) throws IOException {
+        ensureFreeSpace();
+        String hash = sha256(key);
+        Path shard = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4));
+        Files.createDirectories(shard);
+        return shard.toFile();
+    }
+
+    /**
+     * Ghi nhận file vừa tải xong vào quota; vượt quota thì evict ngay.
+     */
+    public void register(Path file) {
+        Path path = normalize(file);
+        if (!path.startsWith(root) || !Files.isRegularFile(path)) {
+            return;
+        }
+        synchronized (this) {
+            index(path, System.currentTimeMillis());
+        }
+        enforceQuota();
+    }
+
+    /**
+     * Đánh dấu file vừa được dùng (cache hit, phục vụ download) để nó xuống cuối hàng LRU.
+     */
+    public synchronized void touch(Path file) {
+        Entry entry = entries.get(normalize(file));
+        if (entry != null) {
+            entry.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Ghim file trong lúc phục vụ; file đang ghim không bị evict hay sweep.
+     */
+    public Lease pin(Path file) {
+        Path path = normalize(file);
+        synchronized (this) {
+            pins.merge(path, 1, Integer::sum);
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                entry.lastAccess = System.currentTimeMillis();
+            }
+        }
+        return new Lease() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                synchronized (StorageManager.this) {
+                    if (!closed) {
+                        closed = true;
+                        pins.computeIfPresent(path, (p, count) -> count > 1 ? count - 1 : null);
+                    }
+                }
+            }
+        };
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int fileCount() {
+        return entries.size();
+    }
+
+    /**
+     * Sweep định kỳ: đồng bộ index với đĩa, xoá file quá hạn không dùng, file dở dang mồ côi, rồi áp quota.
+     */
+    @Scheduled(initialDelayString = "${storage.sweep.interval.ms:60000}", fixedDelayString = "${storage.sweep.interval.ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        List<Path> onDisk = listFiles();
+        List<Path> expired = new ArrayList<>();
+        synchronized (this) {
+            for (Path file : onDisk) {
+                if (entries.containsKey(file)) {
+                    continue;
+                }
+                long modified = lastModified(file);
+                // File lạ mới đổi gần đây có thể là file đang tải, để lần sweep sau
+                if (now - modified < orphanMs) {
+                    continue;
+                }
+                if (isPartial(file)) {
+                    expired.add(file);
+                } else {
+                    index(file, modified);
+                }
+            }
+            Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Path, Entry> e = it.next();
+                if (!Files.isRegularFile(e.getKey())) {
+                    usedBytes -= e.getValue().size;
+                    it.remove();
+                } else if (now - e.getValue().lastAccess > maxIdleMs && !pins.containsKey(e.getKey())) {
+                    usedBytes -= e.getValue().size;
+                    it.remove();
+                    expired.add(e.getKey());
+                }
+            }
+        }
+        for (Path file : expired) {
+            delete(file, "expired");
+        }
+        enforceQuota();
+    }
+
+    private void ensureFreeSpace() throws IOException {
+        long usable = root.toFile().getUsableSpace();
+        if (usable >= minFreeBytes) {
+            return;
+        }
+        long target;
+        synchronized (this) {
+            target = Math.max(0, usedBytes - (minFreeBytes - usable));
+        }
+        evictTo(target, "low disk space");
+        if (root.toFile().getUsableSpace() < minFreeBytes) {
+            throw new IOException("Not enough disk space in storage dir " + root);
+        }
+    }
+
+    private void enforceQuota() {
+        boolean over;
+        synchronized (this) {
+            over = usedBytes > quotaBytes;
+        }
+        if (over) {
+            evictTo((long) (quotaBytes * QUOTA_LOW_WATERMARK), "quota");
+        }
+    }
+
+    private void evictTo(long targetBytes, String reason) {
+        List<Path> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+            while (usedBytes > targetBytes && it.hasNext()) {
+                Map.Entry<Path, Entry> e = it.next();
+                if (pins.containsKey(e.getKey())) {
+                    continue;
+                }
+                usedBytes -= e.getValue().size;
+                it.remove();
+                victims.add(e.getKey());
+            }
+        }
+        for (Path file : victims) {
+            delete(file, reason);
+        }
+    }
+
+    // Gọi khi đang giữ lock
+    private void index(Path file, long lastAccess) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            return;
+        }
+        Entry previous = entries.put(file, new Entry(size, lastAccess));
+        if (previous != null) {
+            usedBytes -= previous.size;
+        }
+        usedBytes += size;
+    }
+
+    private static void delete(Path file, String reason) {
+        try {
+            if (Files.deleteIfExists(file)) {
+                logger.info("Deleted {} ({})", file, reason);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private List<Path> listFiles() {
+        try (Stream<Path> stream = Files.walk(root)) {
+            return new ArrayList<>(stream.filter(Files::isRegularFile).map(Path::normalize).toList());
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to scan storage dir {}: {}", root, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    private static boolean isPartial(Path file) {
+        String name = file.getFileName().toString();
+        return PARTIAL_SUFFIXES.stream().anyMatch(name::endsWith);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String sha256(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Kiểm tra yt-dlp/ffmpeg/ffprobe một lần lúc khởi động và định kỳ chạy lại ở background.
+ * Request chỉ đọc trạng thái đã cache, không fork process.
+ */
+@Component
+public class ToolRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolRegistry.class);
+    private static final long PROBE_TIMEOUT_SECONDS = 10;
+
+    public enum Tool {
+        YT_DLP("--version"),
+        FFMPEG("-version"),
+        FFPROBE("-version");
+
+        private final String versionFlag;
+
+        Tool(String versionFlag) {
+            this.versionFlag = versionFlag;
+        }
+    }
+
+    public record ToolStatus(boolean available, String version, Set<String> capabilities, Instant checkedAt, String error) {
+    }
+
+    @Value("${tiktok.yt.dlp.path:yt-dlp}")
+    private String ytDlpPath;
+
+    @Value("${ffmpeg.path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${ffprobe.path:ffprobe}")
+    private String ffprobePath;
+
+    private volatile Map<Tool, ToolStatus> statuses = Collections.emptyMap();
+
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+
+    @Scheduled(initialDelayString = "${tools.probe.interval.ms:300000}", fixedDelayString = "${tools.probe.interval.ms:300000}")
+    public void refresh() {
+        Map<Tool, ToolStatus> probed = new EnumMap<>(Tool.class);
+        for (Tool tool : Tool.values()) {
+            ToolStatus status = probe(tool);
+            ToolStatus previous = statuses.get(tool);
+            if (previous == null || previous.available() != status.available()) {
+                if (status.available()) {
+                    logger.info("{} available: {} {}", tool, status.version(), status.capabilities());
+                } else {
+                    logger.warn("{} unavailable: {}", tool, status.error());
+                }
+            }
+            probed.put(tool, status);
+        }
+        statuses = Collections.unmodifiableMap(probed);
+    }
+
+    public boolean isAvailable(Tool tool) {
+        ToolStatus status = statuses.get(tool);
+        return status != null && status.available();
+    }
+
+    public ToolStatus status(Tool tool) {
+        return statuses.get(tool);
+    }
+
+    public Map<Tool, ToolStatus> statuses() {
+        return statuses;
+    }
+
+    public String path(Tool tool) {
+        return switch (tool) {
+            case YT_DLP -> ytDlpPath;
+            case FFMPEG -> ffmpegPath;
+            case FFPROBE -> ffprobePath;
+        };
+    }
+
+    private ToolStatus probe(Tool tool) {
+        Instant now = Instant.now();
+        Process process = null;
+        try {
+            process = new ProcessBuilder(path(tool), tool.versionFlag).redirectErrorStream(true).start();
+            if (!process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return new ToolStatus(false, null, Set.of(), now, "probe timed out");
+            }
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (process.exitValue() != 0) {
+                return new ToolStatus(false, null, Set.of(), now, "exit code " + process.exitValue());
+            }
+            return new ToolStatus(true, parseVersion(tool, output), parseCapabilities(output), now, null);
+        } catch (IOException e) {
+            return new ToolStatus(false, null, Set.of(), now, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ToolStatus(false, null, Set.of(), now, "probe interrupted");
+        } finally {
+            if (process != null) {
+                process.destroy();
+            }
+        }
+    }
+
+    static String parseVersion(Tool tool, String output) {
+        String firstLine = output.lines().findFirst().orElse("").trim();
+        if (tool == Tool.YT_DLP) {
+            return firstLine;
+        }
+        // "ffmpeg version 6.1.1-3ubuntu5 Copyright (c) ..."
+        String[] parts = firstLine.split("\\s+");
+        return parts.length >= 3 && parts[1].equals("version") ? parts[2] : firstLine;
+    }
+
+    static Set<String> parseCapabilities(String output) {
+        Set<String> capabilities = new LinkedHashSet<>();
+        for (String token : output.split("\\s+")) {
+            if (token.startsWith("--enable-")) {
+                capabilities.add(token.substring("--enable-".length()));
+            }
+        }
+        return Collections.unmodifiableSet(capabilities);
+    }
+}
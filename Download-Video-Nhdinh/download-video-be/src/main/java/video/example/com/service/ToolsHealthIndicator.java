@@ -0,0 +1,32 @@
+package video.example.com.service;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health "tools": DOWN khi không có yt-dlp, chi tiết phiên bản và capability của từng tool.
+ */
+@Component
+public class ToolsHealthIndicator implements HealthIndicator {
+
+    private final ToolRegistry toolRegistry;
+
+    public ToolsHealthIndicator(ToolRegistry toolRegistry) {
+        this.toolRegistry = toolRegistry;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = toolRegistry.isAvailable(ToolRegistry.Tool.YT_DLP) ? Health.up() : Health.down();
+        for (Map.Entry<ToolRegistry.Tool, ToolRegistry.ToolStatus> entry : toolRegistry.statuses().entrySet()) {
+            ToolRegistry.ToolStatus status = entry.getValue();
+            builder.withDetail(entry.getKey().name().toLowerCase().replace('_', '-'), status.available()
+                    ? Map.of("version", status.version(), "capabilities", status.capabilities(), "checkedAt", status.checkedAt().toString())
+                    : Map.of("error", String.valueOf(status.error()), "checkedAt", status.checkedAt().toString()));
+        }
+        return builder.build();
+    }
+}
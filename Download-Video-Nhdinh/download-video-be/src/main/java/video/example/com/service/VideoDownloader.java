@@ -0,0 +1,154 @@
+package video.example.com.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import video.example.com.service.VideoUrlService.VideoRef;
+import video.example.com.util.FacebookVideoUtil;
+import video.example.com.util.InstagramVideoUtil;
+import video.example.com.util.ProcessPump;
+import video.example.com.util.ProcessSpawner;
+import video.example.com.util.ProgressEvent;
+import video.example.com.util.TiktokVideoUtil;
+
+/**
+ * Tải một video đã chuẩn hoá vào {@link StorageManager} qua {@link DownloadCache}, chọn util theo platform.
+ * Dùng chung cho SSE của từng controller, batch và job API.
+ */
+@Component
+public class VideoDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoDownloader.class);
+
+    @Value("${tiktok.yt.dlp.path:yt-dlp}")
+    private String ytDlpPath = "yt-dlp";
+
+    // Hạn cho một lần yt-dlp tải (và ghép) file, tính cả video dài trên mạng chậm
+    @Value("${ytdlp.download.timeout.minutes:30}")
+    private long downloadTimeoutMinutes = 30;
+
+    private final DownloadCache downloadCache;
+    private final VideoTaskExecutor videoTaskExecutor;
+    private final RetryPolicy retryPolicy;
+    private final StorageManager storageManager;
+    private final MediaTranscoder mediaTranscoder;
+    private final PreviewCache previewCache;
+    private final RangedDownloader rangedDownloader;
+    private final InfoJsonCache infoJsonCache;
+    private final VideoMetrics metrics;
+    private final ProcessPump processPump;
+
+    public VideoDownloader(DownloadCache downloadCache, VideoTaskExecutor videoTaskExecutor, RetryPolicy retryPolicy,
+                           StorageManager storageManager, MediaTranscoder mediaTranscoder, PreviewCache previewCache,
+                           RangedDownloader rangedDownloader, InfoJsonCache infoJsonCache, VideoMetrics metrics,
+                           ProcessPump processPump) {
+        this.downloadCache = downloadCache;
+        this.videoTaskExecutor = videoTaskExecutor;
+        this.retryPolicy = retryPolicy;
+        this.storageManager = storageManager;
+        this.mediaTranscoder = mediaTranscoder;
+        this.previewCache = previewCache;
+        this.rangedDownloader = rangedDownloader;
+        this.infoJsonCache = infoJsonCache;
+        this.metrics = metrics;
+        this.processPump = processPump;
+    }
+
+    public String download(VideoRef ref, Consumer<ProgressEvent> progressCallback) throws IOException {
+        return download(ref, null, progressCallback);
+    }
+
+    /**
+     * {@code title} chỉ dùng cho Facebook (đặt tên file), null thì lấy tiêu đề từ yt-dlp.
+     */
+    public String download(VideoRef ref, String title, Consumer<ProgressEvent> progressCallback) throws IOException {
+        return download(ref, title, progressCallback, null);
+    }
+
+    /**
+     * Nếu /preview vừa resolve được link MP4 trực tiếp thì tải thẳng bằng {@link RangedDownloader};
+     * không có hoặc lỗi thì tải bằng yt-dlp qua {@link RetryPolicy}: mỗi lần thử đi qua proxy do pool chọn,
+     * dùng lại info JSON đã extract ({@link InfoJsonCache}) thay vì để yt-dlp extract lại.
+     * Thời gian chờ giữa các lần thử không giữ slot của platform.
+     */
+    public String download(VideoRef ref, String title, Consumer<ProgressEvent> progressCallback,
+                           RetryPolicy.RetryListener retryListener) throws IOException {
+        String result = downloadCache.getOrDownload(ref.key(), progressCallback, callback -> {
+            File outputDir = storageManager.directoryFor(ref.key());
+            String downloaded = downloadDirect(ref, outputDir, callback);
+            if (downloaded == null) {
+                downloaded = retryPolicy.execute(ref.platform(), (attempt, proxy) ->
+                        videoTaskExecutor.runQueued(ref.platform(), () -> downloadWithYtDlp(ref, title, proxy, outputDir, callback)),
+                        retryListener);
+            }
+            // Slot tải đã trả ở đây; file chuyển sang stage transcode (chỉ TikTok, platform duy nhất trước đây bị re-encode)
+            String path = ref.platform() == Platform.TIKTOK ? mediaTranscoder.ensureCompatible(downloaded) : downloaded;
+            storageManager.register(Path.of(path));
+            return path;
+        });
+        // Cache hit cũng đưa file xuống cuối hàng LRU
+        storageManager.touch(Path.of(result));
+        return result;
+    }
+
+    private String downloadWithYtDlp(VideoRef ref, String title, String proxy, File outputDir,
+                                     Consumer<ProgressEvent> callback) throws IOException {
+        InfoJsonCache.Info info = infoJsonCache.get(ref, proxy);
+        File infoJson = info.file().toFile();
+        ProcessSpawner spawner = builder -> metrics.spawn("yt-dlp", builder);
+        long start = System.nanoTime();
+        try {
+            String path = switch (ref.platform()) {
+                case TIKTOK -> TiktokVideoUtil.downloadVideoUsingYtDlp(ref.canonicalUrl(), infoJson, ytDlpPath, proxy, outputDir, processPump, spawner, Duration.ofMinutes(downloadTimeoutMinutes), callback);
+                case FACEBOOK -> FacebookVideoUtil.downloadVideoUsingYtDlp(ref.canonicalUrl(), infoJson,
+                        title != null && !title.isBlank() ? title : info.title(), proxy, outputDir, processPump, spawner, Duration.ofMinutes(downloadTimeoutMinutes), callback);
+                case INSTAGRAM -> InstagramVideoUtil.downloadVideoUsingYtDlp(ref.canonicalUrl(), infoJson, proxy, outputDir, processPump, spawner, Duration.ofMinutes(downloadTimeoutMinutes), callback);
+            };
+            recordDownload(ref, "ytdlp", path, start);
+            return path;
+        } catch (IOException e) {
+            metrics.phase("download", start, VideoMetrics.FAILURE, "platform", ref.platform().id(), "method", "ytdlp");
+            // Link trong info có thể đã hết hạn hoặc gắn với proxy khác; lần thử sau extract lại
+            infoJsonCache.invalidate(ref.key());
+            throw e;
+        }
+    }
+
+    private String downloadDirect(VideoRef ref, File outputDir, Consumer<ProgressEvent> callback) {
+        String videoUrl = previewCache == null ? null : previewCache.videoUrl(ref.key());
+        if (videoUrl == null) {
+            return null;
+        }
+        try {
+            return videoTaskExecutor.runQueued(ref.platform(), () -> {
+                long start = System.nanoTime();
+                try {
+                    String path = rangedDownloader.download(videoUrl, outputDir, ref.platform().id() + "-" + ref.videoId() + ".mp4", callback);
+                    recordDownload(ref, "direct", path, start);
+                    return path;
+                } catch (IOException e) {
+                    metrics.phase("download", start, VideoMetrics.FAILURE, "platform", ref.platform().id(), "method", "direct");
+                    throw e;
+                }
+            });
+        } catch (IOException e) {
+            // Link CDN có thể đã hết hạn hoặc bị chặn; yt-dlp sẽ extract lại từ đầu
+            logger.warn("Direct download failed for {}, falling back to yt-dlp: {}", ref.key(), e.getMessage());
+            metrics.fallback(ref.platform(), "direct", "ytdlp");
+            return null;
+        }
+    }
+
+    private void recordDownload(VideoRef ref, String method, String path, long startNanos) {
+        metrics.phase("download", startNanos, VideoMetrics.SUCCESS, "platform", ref.platform().id(), "method", method);
+        metrics.downloaded(ref.platform(), method, new File(path).length(), System.nanoTime() - startNanos);
+    }
+}
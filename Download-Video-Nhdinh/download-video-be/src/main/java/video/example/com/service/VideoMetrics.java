@@ -0,0 +1,113 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * Ghi metric theo sự kiện của pipeline (thời gian từng pha, byte đã tải, retry, fallback) vào {@link MeterRegistry}.
+ * Số liệu dạng trạng thái (hàng đợi, emitter đang mở, cache hit) do {@link PipelineMetrics} đọc trực tiếp.
+ * Timer và throughput có histogram để Prometheus tính percentile theo nhiều instance.
+ */
+@Component
+public class VideoMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+
+    private final MeterRegistry registry;
+
+    public VideoMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Bản không ghi gì (registry không có backend), cho code/test dựng component bằng tay.
+     */
+    public static VideoMetrics noop() {
+        return new VideoMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Ghi thời gian một pha ({@code video.<phase>}: extract, download, transcode) tính từ {@code startNanos}.
+     * {@code tags} là cặp tên/giá trị bổ sung, ví dụ platform, method.
+     */
+    public void phase(String phase, long startNanos, String outcome, String... tags) {
+        Timer.builder("video." + phase)
+                .tags(tags)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Khởi động tiến trình và ghi thời gian fork/exec vào {@code process.spawn} theo tool.
+     */
+    public Process spawn(String tool, ProcessBuilder builder) throws IOException {
+        long start = System.nanoTime();
+        String outcome = FAILURE;
+        try {
+            Process process = builder.start();
+            outcome = SUCCESS;
+            return process;
+        } finally {
+            Timer.builder("process.spawn")
+                    .tag("tool", tool)
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Một file tải xong: cộng dồn byte và ghi tốc độ trung bình (byte/giây) vào histogram throughput.
+     */
+    public void downloaded(Platform platform, String method, long bytes, long elapsedNanos) {
+        Counter.builder("video.download.bytes")
+                .baseUnit("bytes")
+                .tag("platform", platform.id())
+                .tag("method", method)
+                .register(registry)
+                .increment(bytes);
+        if (elapsedNanos > 0) {
+            DistributionSummary.builder("video.download.throughput")
+                    .baseUnit("bytes.per.second")
+                    .tag("platform", platform.id())
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(bytes * 1e9 / elapsedNanos);
+        }
+    }
+
+    /**
+     * Một lần thử lại; {@code reason} là "proxy" khi lỗi tính cho proxy, "platform" khi tính cho platform.
+     */
+    public void retry(Platform platform, String reason) {
+        Counter.builder("video.retries")
+                .tag("platform", platform.id())
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Chuyển sang đường dự phòng: {@code from} → {@code to} (direct → ytdlp, server → client).
+     */
+    public void fallback(Platform platform, String from, String to) {
+        Counter.builder("video.fallbacks")
+                .tag("platform", platform.id())
+                .tag("from", from)
+                .tag("to", to)
+                .register(registry)
+                .increment();
+    }
+}
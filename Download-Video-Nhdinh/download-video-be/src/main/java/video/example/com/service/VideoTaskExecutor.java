@@ -0,0 +1,214 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Executor virtual-thread dùng chung cho mọi controller.
+ * Mỗi platform có một {@link AdaptiveLimit} riêng (bulkhead) cho các lần chạy yt-dlp/gọi upstream,
+ * nên TikTok bị chặn không kéo theo Facebook và Instagram. Khi limit và hàng đợi đầy, request mới bị từ chối ngay (429).
+ */
+@Component
+// Đóng trước JobJournal để các task bị ngắt lúc tắt vẫn ghi được trạng thái
+@DependsOn("jobJournal")
+public class VideoTaskExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoTaskExecutor.class);
+
+    @FunctionalInterface
+    public interface IoTask<T> {
+        T run() throws IOException;
+    }
+
+    // Limit ban đầu của từng platform; sau đó AIMD tự điều chỉnh trong khoảng [limit.min.concurrent, limit.max.concurrent]
+    @Value("${tiktok.max.concurrent:${tiktok.thread.pool.size:10}}")
+    private int tiktokMaxConcurrent;
+
+    @Value("${facebook.max.concurrent:10}")
+    private int facebookMaxConcurrent;
+
+    @Value("${instagram.max.concurrent:10}")
+    private int instagramMaxConcurrent;
+
+    @Value("${limit.min.concurrent:1}")
+    private int minConcurrent = 1;
+
+    @Value("${limit.max.concurrent:50}")
+    private int maxConcurrent = 50;
+
+    @Value("${limit.queue.size:20}")
+    private int queueSize = 20;
+
+    @Value("${limit.decrease.ratio:0.7}")
+    private double decreaseRatio = 0.7;
+
+    @Value("${limit.latency.tolerance:2.0}")
+    private double latencyTolerance = 2.0;
+
+    @Value("${limit.decrease.cooldown.ms:1000}")
+    private long decreaseCooldownMs = 1000;
+
+    @Value("${executor.shutdown.timeout.seconds:60}")
+    private long shutdownTimeoutSeconds = 60;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("video-task-", 0).factory());
+    private final Map<Platform, AdaptiveLimit> limits = new EnumMap<>(Platform.class);
+    private volatile boolean terminating;
+
+    @PostConstruct
+    void init() {
+        limits.put(Platform.TIKTOK, newLimit(Platform.TIKTOK, tiktokMaxConcurrent));
+        limits.put(Platform.FACEBOOK, newLimit(Platform.FACEBOOK, facebookMaxConcurrent));
+        limits.put(Platform.INSTAGRAM, newLimit(Platform.INSTAGRAM, instagramMaxConcurrent));
+    }
+
+    private AdaptiveLimit newLimit(Platform platform, int initial) {
+        return new AdaptiveLimit(platform.id(), positive(initial, platform.id()), minConcurrent, maxConcurrent, queueSize,
+                decreaseRatio, latencyTolerance, decreaseCooldownMs);
+    }
+
+    private static int positive(int value, String name) {
+        if (value <= 0) {
+            logger.warn("Invalid max concurrency for {} ({}), defaulting to 10", name, value);
+            return 10;
+        }
+        return value;
+    }
+
+    public AdaptiveLimit limit(Platform platform) {
+        return limits.get(platform);
+    }
+
+    /**
+     * Kiểm tra nhanh trước khi nhận request: platform đã đầy cả limit lẫn hàng đợi thì ném
+     * {@link PlatformOverloadedException} thay vì xếp hàng không giới hạn.
+     */
+    public void admit(Platform platform) {
+        AdaptiveLimit limit = limits.get(platform);
+        if (!limit.hasCapacity()) {
+            logger.warn("Rejecting {} request: limit {} reached ({} in flight)", platform.id(), limit.limit(), limit.inFlight());
+            throw new PlatformOverloadedException(platform, limit.retryAfterSeconds());
+        }
+    }
+
+    /**
+     * Chạy task nền trên virtual thread. Giới hạn đồng thời áp dụng ở {@link #run}/{@link #runQueued},
+     * quanh đúng phần gọi yt-dlp, nên lần tải trúng cache không chiếm slot.
+     */
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Chạy một lần gọi upstream trong limit của platform, từ chối ngay nếu đầy.
+     * Dùng trên request thread (preview, stream trực tiếp).
+     */
+    public <T> T run(Platform platform, IoTask<T> task) throws IOException {
+        return measure(acquireOrReject(platform), task, true);
+    }
+
+    /**
+     * Như {@link #run} nhưng không lấy độ trễ làm tín hiệu điều chỉnh limit, cho việc kéo dài theo tốc độ của client
+     * (stream trực tiếp ra response).
+     */
+    public <T> T runStreaming(Platform platform, IoTask<T> task) throws IOException {
+        return measure(acquireOrReject(platform), task, false);
+    }
+
+    private AdaptiveLimit acquireOrReject(Platform platform) throws IOException {
+        AdaptiveLimit limit = limits.get(platform);
+        try {
+            if (!limit.tryAcquire()) {
+                throw new PlatformOverloadedException(platform, limit.retryAfterSeconds());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + platform.id() + " slot", e);
+        }
+        return limit;
+    }
+
+    /**
+     * Như {@link #run} nhưng chờ tới lượt thay vì từ chối; dùng trong task nền đã được nhận (download, batch, job).
+     */
+    public <T> T runQueued(Platform platform, IoTask<T> task) throws IOException {
+        AdaptiveLimit limit = limits.get(platform);
+        try {
+            limit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + platform.id() + " slot", e);
+        }
+        return measure(limit, task, true);
+    }
+
+    /**
+     * Chỉ lỗi cho thấy upstream quá tải (timeout, 429/5xx, mạng, tức lỗi {@link RetryPolicy#isRetryable}) mới làm giảm limit.
+     * Lỗi của chính video/URL trả slot mà không tính là tín hiệu nào.
+     */
+    private static <T> T measure(AdaptiveLimit limit, IoTask<T> task, boolean timed) throws IOException {
+        long start = System.nanoTime();
+        try {
+            T result = task.run();
+            limit.release(timed ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) : -1, true);
+            return result;
+        } catch (IOException e) {
+            if (RetryPolicy.isRetryable(e)) {
+                limit.release(timed ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) : -1, false);
+            } else {
+                limit.releaseIgnored();
+            }
+            throw e;
+        } catch (RuntimeException | Error e) {
+            limit.releaseIgnored();
+            throw e;
+        }
+    }
+
+    /**
+     * Chạy task preview trên thread hiện tại (request thread là virtual thread) trong limit của platform.
+     */
+    public <T> T preview(Platform platform, IoTask<T> task) throws IOException {
+        return run(platform, task);
+    }
+
+    /**
+     * Đã hết thời gian chờ lúc tắt và các task còn chạy đang bị ngắt; lỗi của chúng lúc này không phải lỗi thật.
+     */
+    public boolean isTerminating() {
+        return terminating;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                terminating = true;
+                executor.shutdownNow();
+                // Cho task bị ngắt kịp dọn dẹp trước khi các bean phía sau (journal) đóng
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            terminating = true;
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            logger.error("Shutdown interrupted: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Kiểm tra URL và chuẩn hoá về định danh video của từng platform, dùng regex biên dịch sẵn.
+ * Link rút gọn (vm.tiktok.com, fb.watch, facebook.com/share/...) được resolve qua redirect và cache lại,
+ * để mọi dạng link của cùng một video dùng chung cache và lần tải đang chạy.
+ */
+@Component
+public class VideoUrlService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoUrlService.class);
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36";
+    private static final int MAX_REDIRECTS = 5;
+
+    // Regex kiểm tra URL đầu vào, giữ nguyên như các controller trước đây
+    private static final Pattern TIKTOK_URL = Pattern.compile("https?://(www\\.)?(tiktok\\.com|vm\\.tiktok\\.com|vt\\.tiktok\\.com)/.*");
+    private static final Pattern FACEBOOK_URL = Pattern.compile("https?://(www\\.)?(facebook\\.com|fb\\.watch|fb\\.com)/.*");
+    private static final Pattern INSTAGRAM_URL = Pattern.compile("https?://(www\\.)?instagram\\.com/reel/[a-zA-Z0-9_-]+(/|\\?[^\\s]*)?");
+
+    // Regex lấy ID video
+    private static final Pattern TIKTOK_VIDEO = Pattern.compile("https?://(?:www\\.|m\\.)?tiktok\\.com/(@[^/?#]+)/(?:video|photo)/(\\d+)");
+    private static final Pattern TIKTOK_SHORT = Pattern.compile("https?://(?:(?:vm|vt)\\.tiktok\\.com/[A-Za-z0-9]+|(?:www\\.)?tiktok\\.com/t/[A-Za-z0-9]+).*");
+    private static final Pattern FACEBOOK_WATCH = Pattern.compile("https?://(?:www\\.|m\\.|web\\.)?(?:facebook|fb)\\.com/watch/?\\?(?:.*&)?v=(\\d+).*");
+    private static final Pattern FACEBOOK_VIDEO = Pattern.compile("https?://(?:www\\.|m\\.|web\\.)?(?:facebook|fb)\\.com/(?:[^/?#]+/videos/(?:[^/?#]+/)?|video\\.php\\?(?:.*&)?v=|reel/)(\\d+).*");
+    private static final Pattern FACEBOOK_SHORT = Pattern.compile("https?://(?:(?:www\\.)?fb\\.watch/[A-Za-z0-9_-]+|(?:www\\.|m\\.)?(?:facebook|fb)\\.com/share/[vr]/[A-Za-z0-9_-]+).*");
+    private static final Pattern INSTAGRAM_MEDIA = Pattern.compile("https?://(?:www\\.)?instagram\\.com/(?:[^/?#]+/)?(?:reel|reels|p|tv)/([A-Za-z0-9_-]+).*");
+
+    // Domain mà redirect của link rút gọn được phép đi qua
+    private static final Map<Platform, List<String>> PLATFORM_DOMAINS = Map.of(
+            Platform.TIKTOK, List.of("tiktok.com"),
+            Platform.FACEBOOK, List.of("facebook.com", "fb.watch", "fb.com"),
+            Platform.INSTAGRAM, List.of("instagram.com"));
+
+    // Tham số query định danh nội dung, giữ lại trong khoá dự phòng
+    private static final List<String> ID_PARAMS = List.of("v", "story_fbid", "fbid", "id");
+
+    public record VideoRef(Platform platform, String videoId, String canonicalUrl) {
+        /**
+         * Khoá dùng chung cho cache preview, cache download và lần tải đang chạy.
+         */
+        public String key() {
+            return platform.id() + ":" + videoId;
+        }
+    }
+
+    @Value("${url.resolve.cache.size:10000}")
+    private int resolveCacheSize = 10000;
+
+    @Value("${url.resolve.timeout.ms:5000}")
+    private long resolveTimeoutMs = 5000;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final Map<String, String> resolved = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > resolveCacheSize;
+        }
+    };
+
+    public boolean isValid(Platform platform, String url) {
+        if (url == null || url.length() > 2048) {
+            return false;
+        }
+        return switch (platform) {
+            case TIKTOK -> TIKTOK_URL.matcher(url).matches();
+            case FACEBOOK -> FACEBOOK_URL.matcher(url).matches();
+            case INSTAGRAM -> INSTAGRAM_URL.matcher(url).matches();
+        };
+    }
+
+    /**
+     * Platform của URL theo quy tắc kiểm tra ở trên, null nếu không platform nào nhận.
+     */
+    public Platform detect(String url) {
+        for (Platform platform : Platform.values()) {
+            if (isValid(platform, url)) {
+                return platform;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chuẩn hoá URL về VideoRef. Link rút gọn được resolve qua redirect (có cache);
+     * nếu không nhận ra ID thì dùng URL đã bỏ query làm định danh.
+     */
+    public VideoRef resolve(Platform platform, String url) {
+        String trimmed = url.trim();
+        VideoRef ref = parse(platform, trimmed);
+        if (ref != null) {
+            return ref;
+        }
+        if (isShortLink(platform, trimmed)) {
+            String target = resolveShortLink(platform, trimmed);
+            if (target != null) {
+                ref = parse(platform, target);
+                if (ref != null) {
+                    return ref;
+                }
+            }
+        }
+        return new VideoRef(platform, normalize(trimmed), trimmed);
+    }
+
+    static VideoRef parse(Platform platform, String url) {
+        Matcher matcher;
+        switch (platform) {
+            case TIKTOK -> {
+                matcher = TIKTOK_VIDEO.matcher(url);
+                if (matcher.lookingAt()) {
+                    return new VideoRef(platform, matcher.group(2),
+                            "https://www.tiktok.com/" + matcher.group(1) + "/video/" + matcher.group(2));
+                }
+            }
+            case FACEBOOK -> {
+                matcher = FACEBOOK_WATCH.matcher(url);
+                if (!matcher.matches()) {
+                    matcher = FACEBOOK_VIDEO.matcher(url);
+                }
+                if (matcher.matches()) {
+                    return new VideoRef(platform, matcher.group(1), "https://www.facebook.com/watch/?v=" + matcher.group(1));
+                }
+            }
+            case INSTAGRAM -> {
+                matcher = INSTAGRAM_MEDIA.matcher(url);
+                if (matcher.matches()) {
+                    return new VideoRef(platform, matcher.group(1), "https://www.instagram.com/reel/" + matcher.group(1) + "/");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isShortLink(Platform platform, String url) {
+        return switch (platform) {
+            case TIKTOK -> TIKTOK_SHORT.matcher(url).matches();
+            case FACEBOOK -> FACEBOOK_SHORT.matcher(url).matches();
+            case INSTAGRAM -> false;
+        };
+    }
+
+    private String resolveShortLink(Platform platform, String url) {
+        synchronized (resolved) {
+            String cached = resolved.get(url);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String current = url;
+        try {
+            // Dừng ngay khi đã lấy được ID, không tải trang đích; bước nhảy ra ngoài domain của platform thì bỏ
+            for (int i = 0; i < MAX_REDIRECTS && parse(platform, current) == null; i++) {
+                String next = fetchRedirectTarget(current);
+                if (next == null) {
+                    break;
+                }
+                if (!isPlatformHost(platform, next)) {
+                    logger.warn("Short link {} redirected outside {}: {}", url, platform.id(), next);
+                    return null;
+                }
+                current = next;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Failed to resolve short link {}: {}", url, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (current.equals(url)) {
+            return null;
+        }
+        logger.info("Resolved short link {} -> {}", url, current);
+        synchronized (resolved) {
+            resolved.put(url, current);
+        }
+        return current;
+    }
+
+    static boolean isPlatformHost(Platform platform, String url) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        String scheme = uri.getScheme();
+        if (uri.getHost() == null || !("https".equalsIgnoreCase(scheme) || "http".equalsIgnoreCase(scheme))) {
+            return false;
+        }
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        return PLATFORM_DOMAINS.get(platform).stream().anyMatch(d -> host.equals(d) || host.endsWith("." + d));
+    }
+
+    /**
+     * Trả về URL trong header Location (request HEAD, không tải trang), hoặc null nếu response không phải redirect.
+     */
+    protected String fetchRedirectTarget(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(resolveTimeoutMs))
+                .header("User-Agent", USER_AGENT)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 3) {
+            return null;
+        }
+        return response.headers().firstValue("Location")
+                .map(location -> URI.create(url).resolve(location).toString())
+                .orElse(null);
+    }
+
+    /**
+     * Định danh dự phòng: bỏ scheme, fragment, "www." và dấu "/" cuối. Query chỉ giữ các tham số định danh
+     * ({@link #ID_PARAMS}) theo thứ tự cố định, vì story.php/permalink.php của Facebook khác nhau chỉ ở query.
+     */
+    static String normalize(String url) {
+        try {
+            URI uri = new URI(url);
+            String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+            if (host.startsWith("www.")) {
+                host = host.substring(4);
+            }
+            String path = uri.getPath() == null ? "" : uri.getPath();
+            while (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            StringBuilder key = new StringBuilder(host).append(path);
+            String query = uri.getRawQuery();
+            if (query != null) {
+                Map<String, String> params = new LinkedHashMap<>();
+                for (String pair : query.split("&")) {
+                    int eq = pair.indexOf('=');
+                    String name = eq < 0 ? pair : pair.substring(0, eq);
+                    if (ID_PARAMS.contains(name) && eq > 0) {
+                        params.putIfAbsent(name, pair.substring(eq + 1));
+                    }
+                }
+                char separator = '?';
+                for (String name : ID_PARAMS) {
+                    String value = params.get(name);
+                    if (value != null) {
+                        key.append(separator).append(name).append('=').append(value);
+                        separator = '&';
+                    }
+                }
+            }
+            return key.toString();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Một stage của pipeline: {@code workers} platform thread cố định và hàng đợi hand-off giới hạn {@code queueSize}.
+ * Khi cả worker lẫn hàng đợi đều đầy, {@link #run} chặn người gửi (backpressure) thay vì xếp hàng vô hạn.
+ * Dùng cho việc tốn CPU (ffmpeg) để không chạy nhiều tiến trình hơn số core, tách khỏi phần tải vốn chờ mạng.
+ */
+public final class WorkerStage {
+
+    /**
+     * Số liệu của stage; thời gian tính trung bình trên các task đã xong.
+     */
+    public record Stats(String name, int workers, int queueCapacity, int queued, int running,
+                        long completed, long failed, long avgWaitMs, long avgRunMs) {
+    }
+
+    private final String name;
+    private final int workers;
+    private final int queueSize;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    public WorkerStage(String name, int workers, int queueSize) {
+        if (workers < 1 || queueSize < 0) {
+            throw new IllegalArgumentException("Invalid stage " + name + ": workers=" + workers + ", queue=" + queueSize);
+        }
+        this.name = name;
+        this.workers = workers;
+        this.queueSize = queueSize;
+        this.permits = new Semaphore(workers + queueSize, true);
+        this.executor = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name(name + "-", 0).daemon().factory());
+    }
+
+    /**
+     * Gửi task vào stage và chờ kết quả. Chặn khi stage đã đầy; exception của task được ném lại nguyên vẹn.
+     */
+    public <T> T run(VideoTaskExecutor.IoTask<T> task) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + name + " stage", e);
+        }
+        long enqueuedAt = System.nanoTime();
+        queued.incrementAndGet();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queued.decrementAndGet();
+                running.incrementAndGet();
+                long start = System.nanoTime();
+                waitNanos.add(start - enqueuedAt);
+                boolean success = false;
+                try {
+                    T result = task.run();
+                    success = true;
+                    return result;
+                } finally {
+                    runNanos.add(System.nanoTime() - start);
+                    (success ? completed : failed).increment();
+                    running.decrementAndGet();
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            permits.release();
+            throw e;
+        }
+        return await(future);
+    }
+
+    private <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Chưa chạy thì rút khỏi hàng đợi; đang chạy thì để nó xong và trả slot như bình thường
+            if (future.cancel(false)) {
+                queued.decrementAndGet();
+                permits.release();
+            }
+            throw new IOException("Interrupted while waiting for " + name + " stage", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(name + " stage failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int workers() {
+        return workers;
+    }
+
+    /**
+     * Số task đang chờ worker.
+     */
+    public int backlog() {
+        return queued.get();
+    }
+
+    public Stats stats() {
+        long done = completed.sum() + failed.sum();
+        return new Stats(name, workers, queueSize, queued.get(), running.get(), completed.sum(), failed.sum(),
+                done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.sum() / done),
+                done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(runNanos.sum() / done));
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package video.example.com.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pool tiến trình yt-dlp chạy lâu dài ({@code ytdlp_worker.py}) để mỗi lần extract không phải khởi động lại
+ * Python và import extractor. Worker nhận job và trả output qua JSON lines trên stdin/stdout.
+ * Mỗi platform có pool riêng ({@code ytdlp.worker.size.<platform>}), được warm lúc khởi động; worker được thay
+ * sau {@code ytdlp.worker.max.jobs} job hoặc khi chết giữa chừng. Không có Python/module yt_dlp thì pool tắt
+ * và người gọi chạy yt-dlp bằng tiến trình riêng như cũ.
+ * Worker dùng module yt_dlp của Python chứ không phải binary trong {@link ToolRegistry}: worker nào báo version
+ * khác binary thì bị bỏ, để extract qua worker và tải qua binary không chạy hai bản extractor khác nhau.
+ */
+@Component
+public class YtDlpWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(YtDlpWorkerPool.class);
+
+    private static final String BUNDLED_SCRIPT = "/ytdlp_worker.py";
+
+    /**
+     * Kết quả một job: exit code của yt-dlp, stdout và stderr (mỗi dòng kết thúc bằng '\n').
+     */
+    public record Result(int exitCode, String stdout, String stderr) {
+    }
+
+    @Value("${ytdlp.worker.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ytdlp.worker.python:python3}")
+    private String python = "python3";
+
+    // Rỗng = dùng script đóng gói trong jar
+    @Value("${ytdlp.worker.script:}")
+    private String script = "";
+
+    @Value("${ytdlp.worker.size.tiktok:${ytdlp.worker.size:2}}")
+    private int tiktokSize = 2;
+
+    @Value("${ytdlp.worker.size.facebook:${ytdlp.worker.size:2}}")
+    private int facebookSize = 2;
+
+    @Value("${ytdlp.worker.size.instagram:${ytdlp.worker.size:2}}")
+    private int instagramSize = 2;
+
+    @Value("${ytdlp.worker.max.jobs:50}")
+    private int maxJobs = 50;
+
+    @Value("${ytdlp.worker.ready.timeout.seconds:30}")
+    private long readyTimeoutSeconds = 30;
+
+    @Value("${ytdlp.worker.acquire.timeout.seconds:60}")
+    private long acquireTimeoutSeconds = 60;
+
+    // Job treo (extractor kẹt, mạng không trả lời) thì giết worker và thay bằng worker mới
+    @Value("${ytdlp.worker.job.timeout.seconds:60}")
+    private long jobTimeoutSeconds = 60;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<Platform, PlatformPool> pools = new EnumMap<>(Platform.class);
+    private final VideoMetrics metrics;
+    // Version của binary yt-dlp, null = không so (binary không có hoặc chưa probe được)
+    private final Supplier<String> binaryVersion;
+    private List<String> command;
+    private volatile boolean closed;
+
+    @Autowired
+    public YtDlpWorkerPool(VideoMetrics metrics, ToolRegistry toolRegistry) {
+        this.metrics = metrics;
+        this.binaryVersion = () -> {
+            ToolRegistry.ToolStatus status = toolRegistry.status(ToolRegistry.Tool.YT_DLP);
+            return status != null && status.available() ? status.version() : null;
+        };
+    }
+
+    YtDlpWorkerPool(List<String> command, int size, int maxJobs) {
+        this(command, size, maxJobs, null);
+    }
+
+    YtDlpWorkerPool(List<String> command, int size, int maxJobs, String binaryVersion) {
+        this.metrics = VideoMetrics.noop();
+        this.binaryVersion = () -> binaryVersion;
+        this.command = command;
+        this.maxJobs = maxJobs;
+        this.tiktokSize = size;
+        this.facebookSize = size;
+        this.instagramSize = size;
+        warm();
+    }
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            logger.info("yt-dlp worker pool disabled");
+            return;
+        }
+        try {
+            command = List.of(python, "-u", script.isEmpty() ? extractBundledScript().toString() : script);
+        } catch (IOException e) {
+            logger.warn("Cannot prepare yt-dlp worker script, falling back to one process per call: {}", e.getMessage());
+            return;
+        }
+        warm();
+    }
+
+    private Path extractBundledScript() throws IOException {
+        Path file = Files.createTempFile("ytdlp_worker", ".py");
+        file.toFile().deleteOnExit();
+        try (InputStream in = YtDlpWorkerPool.class.getResourceAsStream(BUNDLED_SCRIPT)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + BUNDLED_SCRIPT);
+            }
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    /**
+     * Khởi động mọi worker song song rồi chờ chúng import xong; platform nào không có worker sẵn sàng thì tắt pool đó.
+     */
+    private void warm() {
+        Map<Platform, Integer> sizes = Map.of(Platform.TIKTOK, tiktokSize, Platform.FACEBOOK, facebookSize,
+                Platform.INSTAGRAM, instagramSize);
+        List<Worker> starting = new ArrayList<>();
+        for (Platform platform : Platform.values()) {
+            PlatformPool pool = new PlatformPool(platform, Math.max(0, sizes.get(platform)));
+            pools.put(platform, pool);
+            for (int i = 0; i < pool.size; i++) {
+                Worker worker = spawn(pool);
+                if (worker != null) {
+                    starting.add(worker);
+                }
+            }
+        }
+        for (Worker worker : starting) {
+            if (awaitReady(worker)) {
+                worker.pool.idle.add(worker);
+            }
+        }
+        for (PlatformPool pool : pools.values()) {
+            pool.available = !pool.idle.isEmpty();
+            logger.info("yt-dlp worker pool for {}: {}/{} workers ready", pool.platform.id(), pool.idle.size(), pool.size);
+        }
+    }
+
+    public boolean isAvailable(Platform platform) {
+        PlatformPool pool = pools.get(platform);
+        return !closed && pool != null && pool.available;
+    }
+
+    /**
+     * Số worker đang rảnh của {@code platform}.
+     */
+    public int idleWorkers(Platform platform) {
+        PlatformPool pool = pools.get(platform);
+        return pool == null ? 0 : pool.idle.size();
+    }
+
+    /**
+     * Chạy yt-dlp với {@code args} (không gồm tên lệnh) trên một worker của {@code platform}.
+     * {@code onLine} nhận từng dòng stdout/stderr khi tới, dùng cho progress. Chỉ gọi khi {@link #isAvailable}.
+     */
+    public Result execute(Platform platform, List<String> args, Consumer<String> onLine) throws IOException {
+        return execute(platform, args, onLine, Duration.ofSeconds(jobTimeoutSeconds));
+    }
+
+    /**
+     * Như trên, nhưng quá {@code timeout} thì worker bị giết (rồi được thay) và ném IOException.
+     */
+    public Result execute(Platform platform, List<String> args, Consumer<String> onLine, Duration timeout) throws IOException {
+        PlatformPool pool = pools.get(platform);
+        Worker worker;
+        try {
+            worker = pool.idle.poll(acquireTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + platform.id() + " yt-dlp worker", e);
+        }
+        if (worker == null) {
+            throw new IOException("No " + platform.id() + " yt-dlp worker became free within " + acquireTimeoutSeconds + " s");
+        }
+        boolean healthy = false;
+        try {
+            Result result = worker.run(jobIds.incrementAndGet(), args, onLine, timeout);
+            healthy = true;
+            return result;
+        } finally {
+            release(worker, healthy);
+        }
+    }
+
+    private void release(Worker worker, boolean healthy) {
+        if (healthy && worker.process.isAlive() && worker.jobs < maxJobs && !closed) {
+            worker.pool.idle.add(worker);
+            return;
+        }
+        logger.info("Recycling {} yt-dlp worker pid {} after {} jobs{}", worker.pool.platform.id(), worker.process.pid(),
+                worker.jobs, healthy ? "" : " (crashed)");
+        worker.destroy();
+        if (closed) {
+            return;
+        }
+        // Worker mới warm trên virtual thread, trong lúc đó job khác dùng các worker còn lại
+        Thread.ofVirtual().name("ytdlp-worker-respawn").start(() -> {
+            Worker replacement = spawn(worker.pool);
+            if (replacement != null && awaitReady(replacement)) {
+                worker.pool.idle.add(replacement);
+            } else if (worker.pool.idle.isEmpty()) {
+                worker.pool.available = false;
+                logger.warn("No {} yt-dlp worker could be restarted, falling back to one process per call", worker.pool.platform.id());
+            }
+        });
+    }
+
+    private Worker spawn(PlatformPool pool) {
+        try {
+            Process process = metrics.spawn("ytdlp-worker", new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD));
+            Worker worker = new Worker(pool, process);
+            pool.all.add(worker);
+            return worker;
+        } catch (IOException e) {
+            logger.warn("Cannot start yt-dlp worker {}: {}", command, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean awaitReady(Worker worker) {
+        try {
+            JsonNode message = worker.readMessage(readyTimeoutSeconds);
+            if (message != null && "ready".equals(message.path("type").asText())) {
+                String version = message.path("version").asText();
+                String expected = binaryVersion.get();
+                if (expected == null || expected.equals(version)) {
+                    logger.debug("yt-dlp worker pid {} ready (yt-dlp {})", worker.process.pid(), version);
+                    return true;
+                }
+                logger.warn("yt-dlp worker runs yt_dlp module {} but the yt-dlp binary is {}, not using it", version, expected);
+                worker.destroy();
+                return false;
+            }
+            logger.warn("yt-dlp worker failed to start: {}", message == null ? "no ready message" : message.path("error").asText(message.toString()));
+        } catch (IOException e) {
+            logger.warn("yt-dlp worker failed to start: {}", e.getMessage());
+        }
+        worker.destroy();
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        for (PlatformPool pool : pools.values()) {
+            pool.all.forEach(Worker::destroy);
+        }
+    }
+
+    private static final class PlatformPool {
+        private final Platform platform;
+        private final int size;
+        private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+        private final List<Worker> all = new CopyOnWriteArrayList<>();
+        private volatile boolean available;
+
+        private PlatformPool(Platform platform, int size) {
+            this.platform = platform;
+            this.size = size;
+        }
+    }
+
+    private final class Worker {
+        private final PlatformPool pool;
+        private final Process process;
+        private final BufferedWriter stdin;
+        private final BufferedReader stdout;
+        private int jobs;
+
+        private Worker(PlatformPool pool, Process process) {
+            this.pool = pool;
+            this.process = process;
+            this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        Result run(long id, List<String> args, Consumer<String> onLine, Duration timeout) throws IOException {
+            jobs++;
+            AtomicBoolean expired = new AtomicBoolean();
+            Thread watchdog = watchdog(timeout.toMillis(), expired);
+            try {
+                return await(id, args, onLine);
+            } catch (IOException e) {
+                if (expired.get()) {
+                    throw new IOException("yt-dlp worker pid " + process.pid() + " timed out after " + timeout.toSeconds() + " s", e);
+                }
+                throw e;
+            } finally {
+                watchdog.interrupt();
+            }
+        }
+
+        private Result await(long id, List<String> args, Consumer<String> onLine) throws IOException {
+            stdin.write(objectMapper.writeValueAsString(Map.of("id", id, "args", args)));
+            stdin.newLine();
+            stdin.flush();
+            StringBuilder out = new StringBuilder();
+            StringBuilder err = new StringBuilder();
+            while (true) {
+                JsonNode message = nextMessage();
+                if (message == null) {
+                    throw new IOException("yt-dlp worker pid " + process.pid() + " exited during job (exit code "
+                            + (process.isAlive() ? "?" : process.exitValue()) + ")");
+                }
+                if (message.path("id").asLong() != id) {
+                    continue;
+                }
+                String type = message.path("type").asText();
+                if (type.equals("line")) {
+                    String line = message.path("line").asText();
+                    ("err".equals(message.path("stream").asText()) ? err : out).append(line).append('\n');
+                    if (onLine != null) {
+                        onLine.accept(line);
+                    }
+                } else if (type.equals("exit")) {
+                    return new Result(message.path("code").asInt(1), out.toString(), err.toString());
+                }
+            }
+        }
+
+        /**
+         * Đọc message JSON kế tiếp (bỏ qua dòng lạ); null khi worker đã đóng stdout.
+         * Quá {@code timeoutSeconds} mà chưa có message thì giết worker.
+         */
+        JsonNode readMessage(long timeoutSeconds) throws IOException {
+            Thread watchdog = watchdog(TimeUnit.SECONDS.toMillis(timeoutSeconds), new AtomicBoolean());
+            try {
+                return nextMessage();
+            } finally {
+                watchdog.interrupt();
+            }
+        }
+
+        // readLine không có timeout nên canh bằng waitFor trên virtual thread, bị ngắt khi đã đọc xong
+        private Thread watchdog(long timeoutMs, AtomicBoolean expired) {
+            return Thread.ofVirtual().name("ytdlp-worker-watchdog").start(() -> {
+                try {
+                    if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+                        expired.set(true);
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        private JsonNode nextMessage() throws IOException {
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                try {
+                    JsonNode message = objectMapper.readTree(line);
+                    if (message.isObject()) {
+                        return message;
+                    }
+                } catch (IOException e) {
+                    // Thư viện nào đó in thẳng ra stdout thật; không phải message của giao thức
+                }
+                logger.debug("Ignoring non-protocol output from yt-dlp worker: {}", line);
+            }
+            return null;
+        }
+
+        void destroy() {
+            pool.all.remove(this);
+            try {
+                stdin.close();
+            } catch (IOException e) {
+                logger.debug("Closing worker stdin failed: {}", e.getMessage());
+            }
+            process.destroy();
+        }
+    }
+}
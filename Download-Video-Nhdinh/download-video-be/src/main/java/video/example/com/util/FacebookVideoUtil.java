@@ -1,16 +1,29 @@
 package video.example.com.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class FacebookVideoUtil {
 
+    private static final Logger logger = LoggerFactory.getLogger(FacebookVideoUtil.class);
+
+    // --get-title chỉ extract trang, không tải video
+    private static final Duration TITLE_TIMEOUT = Duration.ofSeconds(60);
+
     // Hàm tiện ích để làm sạch tiêu đề thành tên file hợp lệ
-    private static String sanitizeFileName(String title) {
+    public static String sanitizeFileName(String title) {
         if (title == null || title.trim().isEmpty()) {
             return UUID.randomUUID().toString();
         }
@@ -19,62 +32,102 @@ public class FacebookVideoUtil {
         return sanitized.isEmpty() ? UUID.randomUUID().toString() : sanitized;
     }
 
-    public static String downloadVideoUsingYtDlp(String fbUrl, String providedTitle, Consumer<String> progressCallback) throws IOException {
+    /**
+     * Tải vào {@code outputDir}; {@code proxy} rỗng thì đi thẳng, {@code infoJson} khác null thì dùng info đã extract
+     * (khi đó người gọi truyền title lấy từ info, không chạy thêm {@code --get-title}).
+     */
+    public static String downloadVideoUsingYtDlp(String fbUrl, File infoJson, String providedTitle, String proxy, File outputDir,
+                                                 ProcessPump pump, ProcessSpawner spawner, Duration timeout,
+                                                 Consumer<ProgressEvent> progressCallback) throws IOException {
         // Nếu không có tiêu đề từ client, thử lấy từ yt-dlp
         String videoTitle = providedTitle;
-        if (videoTitle == null || videoTitle.trim().isEmpty()) {
-            ProcessBuilder titlePb = new ProcessBuilder("yt-dlp", "--get-title", fbUrl);
+        if (infoJson == null && (videoTitle == null || videoTitle.trim().isEmpty())) {
+            ProcessBuilder titlePb = new ProcessBuilder(YtDlpArgs.withProxy(proxy, "yt-dlp", "--get-title", fbUrl));
             titlePb.redirectErrorStream(true);
-            Process titleProcess = titlePb.start();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(titleProcess.getInputStream(), "UTF-8"))) {
-                videoTitle = reader.readLine();
+            Process titleProcess = spawner.start(titlePb);
+            List<String> lines = new ArrayList<>();
+            try {
+                pump.run(titleProcess, lines::add, TITLE_TIMEOUT);
+                videoTitle = lines.isEmpty() ? null : lines.get(0);
             } catch (IOException e) {
-                System.err.println("Failed to read video title: " + e.getMessage());
+                logger.warn("Failed to read video title: {}", e.getMessage());
                 videoTitle = null; // Fallback to null if reading fails
             }
-            try {
-                titleProcess.waitFor();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt(); // Khôi phục trạng thái ngắt
-                System.err.println("Interrupted while waiting for title process: " + e.getMessage());
-                videoTitle = null; // Fallback to null if interrupted
-            }
         }
 
-        // Tạo tên file từ tiêu đề
-        String fileName = sanitizeFileName(videoTitle) + ".mp4";
-        String outputPath = System.getProperty("java.io.tmpdir") + File.separator + fileName;
+        // Tạo tên file từ tiêu đề, thêm hậu tố ngẫu nhiên để hai video trùng tiêu đề không ghi đè nhau
+        String fileName = sanitizeFileName(videoTitle) + "-" + UUID.randomUUID().toString().substring(0, 8) + ".mp4";
+        String outputPath = new File(outputDir, fileName).getPath();
 
-        ProcessBuilder pb = new ProcessBuilder(
-                "yt-dlp", "--newline", "-f", "best", "-o", outputPath, fbUrl
+        List<String> command = YtDlpArgs.withProxy(proxy,
+                "yt-dlp", "--newline", "-f", "best", "-o", outputPath
         );
+        command.addAll(YtDlpArgs.source(fbUrl, infoJson));
+        ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
 
-        Process process = pb.start();
+        Process process = spawner.start(pb);
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[yt-dlp] " + line);
-                if (progressCallback != null && line.matches(".*?(\\d{1,3})\\.\\d+%.*")) {
-                    String percent = line.replaceAll(".*?(\\d{1,3})\\.\\d+%.*", "$1");
-                    progressCallback.accept("PROGRESS_" + percent);
-                }
+        YtDlpProgressParser progressParser = new YtDlpProgressParser();
+        StringBuilder output = new StringBuilder();
+        // Output do pump đọc, thread này chỉ chờ tiến trình thoát
+        int exitCode = pump.run(process, line -> {
+            logger.debug("yt-dlp line: {}", line);
+            output.append(line).append("\n");
+            if (progressCallback != null && progressParser.parse(line)) {
+                progressCallback.accept(progressParser.toEvent());
             }
-        } catch (Exception e) {
-            throw new IOException("Download failed: " + e.getMessage(), e);
+        }, timeout);
+        if (exitCode != 0) {
+            throw new YtDlpException(exitCode, output.toString());
+        }
+
+        return outputPath;
+    }
+
+    /**
+     * Chế độ pass-through: yt-dlp ghi thẳng ra stdout ({@code -o -}) và byte được chép sang {@code out},
+     * không qua file tạm. Chỉ dùng cho format không cần merge/re-encode ({@code -f b}).
+     */
+    public static void streamVideoUsingYtDlp(String ytDlpPath, String fbUrl, ProcessSpawner spawner, Duration timeout,
+                                             OutputStream out) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(
+                ytDlpPath, "--quiet", "--no-part", "-f", "b", "-o", "-", fbUrl
+        );
+        // stdout là dữ liệu video nên log của yt-dlp đi qua stderr của server
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        Process process = spawner.start(pb);
+        // transferTo/waitFor không có hạn: quá timeout thì kill, stdout đóng lại và transferTo trả về
+        AtomicBoolean timedOut = new AtomicBoolean();
+        process.onExit()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    timedOut.set(true);
+                    process.destroyForcibly();
+                    return process;
+                });
+
+        try (InputStream in = process.getInputStream()) {
+            in.transferTo(out);
+            out.flush();
+        } catch (IOException e) {
+            process.destroyForcibly();
+            throw new IOException("Streaming failed: " + e.getMessage(), e);
         }
 
         try {
             int exitCode = process.waitFor();
+            if (timedOut.get()) {
+                throw new IOException("yt-dlp stream timed out after " + timeout.toSeconds() + " s");
+            }
             if (exitCode != 0) {
-                throw new IOException("yt-dlp exited with code " + exitCode);
+                throw new YtDlpException(exitCode, "");
             }
         } catch (InterruptedException e) {
+            process.destroyForcibly();
             Thread.currentThread().interrupt();
-            throw new IOException("Interrupted during download", e);
+            throw new IOException("Interrupted during streaming", e);
         }
-
-        return outputPath;
     }
 }
@@ -1,47 +1,100 @@
 package video.example.com.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class InstagramVideoUtil {
 
-    public static String downloadVideoUsingYtDlp(String instaUrl, Consumer<String> progressCallback) throws IOException {
-        String outputPath = System.getProperty("java.io.tmpdir") + File.separator + UUID.randomUUID() + ".mp4";
+    private static final Logger logger = LoggerFactory.getLogger(InstagramVideoUtil.class);
 
-        ProcessBuilder pb = new ProcessBuilder(
-                "yt-dlp", "--newline", "-f", "best", "-o", outputPath, instaUrl
+    /**
+     * Tải vào {@code outputDir}; {@code proxy} rỗng thì đi thẳng, {@code infoJson} khác null thì dùng info đã extract.
+     */
+    public static String downloadVideoUsingYtDlp(String instaUrl, File infoJson, String proxy, File outputDir,
+                                                 ProcessPump pump, ProcessSpawner spawner, Duration timeout,
+                                                 Consumer<ProgressEvent> progressCallback) throws IOException {
+        String outputPath = new File(outputDir, UUID.randomUUID() + ".mp4").getPath();
+
+        List<String> command = YtDlpArgs.withProxy(proxy,
+                "yt-dlp", "--newline", "-f", "best", "-o", outputPath
         );
+        command.addAll(YtDlpArgs.source(instaUrl, infoJson));
+        ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
 
-        Process process = pb.start();
+        Process process = spawner.start(pb);
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[yt-dlp] " + line);
-                if (progressCallback != null && line.matches(".*?(\\d{1,3})\\.\\d+%.*")) {
-                    String percent = line.replaceAll(".*?(\\d{1,3})\\.\\d+%.*", "$1");
-                    progressCallback.accept("PROGRESS_" + percent);
-                }
+        YtDlpProgressParser progressParser = new YtDlpProgressParser();
+        StringBuilder output = new StringBuilder();
+        // Output do pump đọc, thread này chỉ chờ tiến trình thoát
+        int exitCode = pump.run(process, line -> {
+            logger.debug("yt-dlp line: {}", line);
+            output.append(line).append("\n");
+            if (progressCallback != null && progressParser.parse(line)) {
+                progressCallback.accept(progressParser.toEvent());
             }
-        } catch (Exception e) {
-            throw new IOException("Download failed: " + e.getMessage(), e);
+        }, timeout);
+        if (exitCode != 0) {
+            throw new YtDlpException(exitCode, output.toString());
+        }
+
+        return outputPath;
+    }
+
+    /**
+     * Chế độ pass-through: yt-dlp ghi thẳng ra stdout ({@code -o -}) và byte được chép sang {@code out},
+     * không qua file tạm. Chỉ dùng cho format không cần merge/re-encode ({@code -f best}).
+     */
+    public static void streamVideoUsingYtDlp(String ytDlpPath, String instaUrl, ProcessSpawner spawner, Duration timeout,
+                                             OutputStream out) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(
+                ytDlpPath, "--quiet", "--no-part", "-f", "best", "-o", "-", instaUrl
+        );
+        // stdout là dữ liệu video nên log của yt-dlp đi qua stderr của server
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        Process process = spawner.start(pb);
+        // transferTo/waitFor không có hạn: quá timeout thì kill, stdout đóng lại và transferTo trả về
+        AtomicBoolean timedOut = new AtomicBoolean();
+        process.onExit()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    timedOut.set(true);
+                    process.destroyForcibly();
+                    return process;
+                });
+
+        try (InputStream in = process.getInputStream()) {
+            in.transferTo(out);
+            out.flush();
+        } catch (IOException e) {
+            process.destroyForcibly();
+            throw new IOException("Streaming failed: " + e.getMessage(), e);
         }
 
         try {
             int exitCode = process.waitFor();
+            if (timedOut.get()) {
+                throw new IOException("yt-dlp stream timed out after " + timeout.toSeconds() + " s");
+            }
             if (exitCode != 0) {
-                throw new IOException("yt-dlp exited with code " + exitCode);
+                throw new YtDlpException(exitCode, "");
             }
         } catch (InterruptedException e) {
+            process.destroyForcibly();
             Thread.currentThread().interrupt();
-            throw new IOException("Interrupted", e);
+            throw new IOException("Interrupted during streaming", e);
         }
-
-        return outputPath;
     }
 }
@@ -0,0 +1,266 @@
+package video.example.com.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Đọc stdout của mọi tiến trình con (yt-dlp, ffmpeg) bằng vài thread pump cố định thay vì mỗi tiến trình
+ * giữ một thread chặn ở {@code readLine()} suốt lúc chạy. Pump chỉ đọc phần đã có sẵn ({@code available()}),
+ * cắt thành dòng rồi gọi {@code onLine} của job; hết dữ liệu ở mọi job thì ngủ ngắn, được đánh thức khi có job
+ * mới hoặc tiến trình thoát. Thoát và timeout xử lý bất đồng bộ qua {@link Process#onExit()}.
+ * {@code onLine} chạy trên thread pump dùng chung nên phải nhanh và không chặn (không I/O mạng, không chờ lock lâu):
+ * một callback chậm làm trễ output của mọi tiến trình khác trên cùng pump. Việc nặng thì chuyển sang thread khác.
+ * Không có timeout mặc định: mỗi người gọi tự chọn hạn cho loại tiến trình của mình.
+ */
+public final class ProcessPump implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessPump.class);
+
+    private static final int BUFFER_SIZE = 8192;
+    // Ngủ tăng dần khi không job nào có dữ liệu: phản hồi nhanh lúc bận, gần như không tốn CPU lúc rảnh
+    private static final long MIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Pump[] pumps;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile boolean closed;
+
+    public ProcessPump(int threads) {
+        this.pumps = new Pump[Math.max(1, threads)];
+        for (int i = 0; i < pumps.length; i++) {
+            pumps[i] = new Pump();
+            pumps[i].thread = Thread.ofPlatform().daemon().name("process-pump-" + i).start(pumps[i]);
+        }
+    }
+
+    /**
+     * Theo dõi {@code process}: mỗi dòng đọc từ {@code output} (stdout hoặc stderr của nó) gửi tới {@code onLine}
+     * (có thể null, không được chặn), future hoàn tất với exit code sau khi đã đọc hết output.
+     * Quá {@code timeout} thì tiến trình bị kill và future lỗi với {@link TimeoutException}.
+     */
+    public CompletableFuture<Integer> watch(Process process, InputStream output, Consumer<String> onLine, Duration timeout) {
+        Job job = new Job(process, output, onLine);
+        if (closed) {
+            job.fail(new IOException("Process pump is shut down"));
+            return job.result;
+        }
+        Pump pump = pumps[Math.floorMod(next.getAndIncrement(), pumps.length)];
+        process.onExit()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((p, error) -> {
+                    if (error instanceof TimeoutException) {
+                        job.timedOut = true;
+                        process.destroyForcibly();
+                    }
+                    LockSupport.unpark(pump.thread);
+                });
+        pump.incoming.add(job);
+        LockSupport.unpark(pump.thread);
+        return job.result;
+    }
+
+    /**
+     * Đọc stdout của {@code process} và chờ tới khi tiến trình thoát (luồng gọi nên là virtual thread).
+     * Bị ngắt hoặc quá {@code timeout} thì kill tiến trình và ném IOException.
+     */
+    public int run(Process process, Consumer<String> onLine, Duration timeout) throws IOException {
+        return run(process, process.getInputStream(), onLine, timeout);
+    }
+
+    public int run(Process process, InputStream output, Consumer<String> onLine, Duration timeout) throws IOException {
+        CompletableFuture<Integer> result = watch(process, output, onLine, timeout);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for process " + process.pid(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof TimeoutException) {
+                throw new IOException("Process " + process.pid() + " timed out after " + timeout.toSeconds() + " s", cause);
+            }
+            throw new IOException("Failed to read output of process " + process.pid() + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Tổng số tiến trình đang được theo dõi.
+     */
+    public int active() {
+        int total = 0;
+        for (Pump pump : pumps) {
+            total += pump.incoming.size() + pump.active;
+        }
+        return total;
+    }
+
+    public int threads() {
+        return pumps.length;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Pump pump : pumps) {
+            pump.thread.interrupt();
+        }
+    }
+
+    private final class Pump implements Runnable {
+        private final ConcurrentLinkedQueue<Job> incoming = new ConcurrentLinkedQueue<>();
+        private final List<Job> jobs = new ArrayList<>();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private volatile int active;
+        private Thread thread;
+
+        @Override
+        public void run() {
+            long park = MIN_PARK_NANOS;
+            while (!closed) {
+                for (Job job; (job = incoming.poll()) != null; ) {
+                    jobs.add(job);
+                }
+                boolean progressed = false;
+                for (Iterator<Job> it = jobs.iterator(); it.hasNext(); ) {
+                    Job job = it.next();
+                    try {
+                        progressed |= job.pump(buffer);
+                        if (job.finished()) {
+                            it.remove();
+                            job.complete();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        it.remove();
+                        job.fail(e);
+                    }
+                }
+                active = jobs.size();
+                if (progressed) {
+                    park = MIN_PARK_NANOS;
+                } else {
+                    LockSupport.parkNanos(this, park);
+                    park = Math.min(park * 2, MAX_PARK_NANOS);
+                }
+            }
+            for (Job job : jobs) {
+                job.fail(new IOException("Process pump is shut down"));
+            }
+            incoming.forEach(job -> job.fail(new IOException("Process pump is shut down")));
+        }
+    }
+
+    private static final class Job {
+        private final Process process;
+        private final InputStream in;
+        private final Consumer<String> onLine;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private boolean lastWasCr;
+        private volatile boolean timedOut;
+
+        private Job(Process process, InputStream in, Consumer<String> onLine) {
+            this.process = process;
+            this.in = in;
+            this.onLine = onLine;
+        }
+
+        /**
+         * Đọc phần output đã có sẵn mà không chặn; trả về true nếu đọc được byte nào.
+         */
+        boolean pump(byte[] buffer) throws IOException {
+            boolean read = false;
+            int available;
+            while ((available = in.available()) > 0) {
+                int n = in.read(buffer, 0, Math.min(available, buffer.length));
+                if (n <= 0) {
+                    break;
+                }
+                read = true;
+                split(buffer, n);
+            }
+            return read;
+        }
+
+        // Giống readLine(): \n, \r và \r\n đều kết thúc dòng
+        private void split(byte[] buffer, int n) {
+            for (int i = 0; i < n; i++) {
+                byte b = buffer[i];
+                if (b == '\n' && lastWasCr) {
+                    lastWasCr = false;
+                    continue;
+                }
+                lastWasCr = b == '\r';
+                if (b == '\n' || b == '\r') {
+                    emit();
+                } else {
+                    line.write(b);
+                }
+            }
+        }
+
+        private void emit() {
+            String text = line.toString(StandardCharsets.UTF_8);
+            line.reset();
+            if (onLine != null) {
+                onLine.accept(text);
+            }
+        }
+
+        /**
+         * Tiến trình đã thoát và pipe không còn dữ liệu. Không chờ EOF vì tiến trình cháu (ffmpeg do yt-dlp gọi)
+         * có thể vẫn giữ đầu ghi của pipe.
+         */
+        boolean finished() throws IOException {
+            return !process.isAlive() && in.available() == 0;
+        }
+
+        void complete() {
+            if (line.size() > 0) {
+                emit();
+            }
+            closeQuietly();
+            if (timedOut) {
+                result.completeExceptionally(new TimeoutException("Process " + process.pid() + " timed out"));
+            } else {
+                result.complete(process.exitValue());
+            }
+        }
+
+        void fail(Throwable error) {
+            logger.debug("Stopped pumping output of process {}: {}", process.pid(), error.getMessage());
+            process.destroyForcibly();
+            closeQuietly();
+            // destroy() đóng luôn pipe nên lần đọc sau khi kill vì timeout sẽ báo "Stream closed"
+            result.completeExceptionally(timedOut ? new TimeoutException("Process " + process.pid() + " timed out") : error);
+        }
+
+        private void closeQuietly() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close output of process {}: {}", process.pid(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package video.example.com.util;
+
+import java.io.IOException;
+
+/**
+ * Cách các util khởi động tiến trình con. Service truyền {@code builder -> metrics.spawn("yt-dlp", builder)}
+ * để thời gian fork/exec của tiến trình tải cũng được ghi vào {@code process.spawn}.
+ */
+@FunctionalInterface
+public interface ProcessSpawner {
+
+    /**
+     * Gọi thẳng {@link ProcessBuilder#start()}, không ghi metrics.
+     */
+    ProcessSpawner DIRECT = ProcessBuilder::start;
+
+    Process start(ProcessBuilder builder) throws IOException;
+}
@@ -0,0 +1,29 @@
+package video.example.com.util;
+
+/**
+ * Tiến độ tải của yt-dlp. Giá trị -1 nghĩa là yt-dlp không báo thông tin đó (Unknown).
+ */
+public record ProgressEvent(
+        double percent,
+        long downloadedBytes,
+        long totalBytes,
+        long speedBytesPerSecond,
+        int etaSeconds,
+        int fragmentIndex,
+        int fragmentCount) {
+
+    public static ProgressEvent ofPercent(int percent) {
+        return new ProgressEvent(percent, -1, -1, -1, -1, -1, -1);
+    }
+
+    public int wholePercent() {
+        return (int) percent;
+    }
+
+    /**
+     * Dạng "PROGRESS_n" mà frontend hiện tại đang đọc.
+     */
+    public String legacyMessage() {
+        return "PROGRESS_" + wholePercent();
+    }
+}
@@ -0,0 +1,127 @@
+package video.example.com.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đóng body HTTP khi một lần {@code read()} chờ quá {@code stall} mà không nhận được byte nào.
+ * Timeout của {@link java.net.http.HttpRequest} chỉ tính tới lúc nhận header; body đọc qua
+ * {@code BodyHandlers.ofInputStream()} có thể treo mãi nếu server ngừng gửi giữa chừng.
+ * Đóng stream làm {@code read()} đang chặn ném IOException, người gọi xử lý như lỗi mạng (thử lại, tải tiếp).
+ * Chỉ tính thời gian nằm trong {@code read()}, nên ghi chậm ra phía client không bị coi là treo.
+ * Một thread daemon dùng chung kiểm tra mọi stream đang theo dõi.
+ */
+public final class StallWatchdog {
+
+    private static final long CHECK_INTERVAL_MS = 250;
+
+    private static final Set<Guarded> WATCHED = ConcurrentHashMap.newKeySet();
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stall-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMER.scheduleWithFixedDelay(StallWatchdog::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private StallWatchdog() {
+    }
+
+    /**
+     * Bọc {@code in}; đóng stream trả về thì ngừng theo dõi.
+     */
+    public static InputStream guard(InputStream in, Duration stall) {
+        Guarded guarded = new Guarded(in, stall);
+        WATCHED.add(guarded);
+        return guarded;
+    }
+
+    private static void check() {
+        long now = System.nanoTime();
+        for (Guarded guarded : WATCHED) {
+            long since = guarded.readingSince;
+            if (since != 0 && now - since > guarded.stall.toNanos()) {
+                guarded.abort();
+            }
+        }
+    }
+
+    private static final class Guarded extends FilterInputStream {
+        private final Duration stall;
+        // nanoTime lúc bắt đầu read() đang chặn, 0 = không ở trong read()
+        private volatile long readingSince;
+        private volatile boolean stalled;
+
+        private Guarded(InputStream in, Duration stall) {
+            super(in);
+            this.stall = stall;
+        }
+
+        @Override
+        public int read() throws IOException {
+            begin();
+            try {
+                return checked(super.read());
+            } catch (IOException e) {
+                throw stalled ? stalledException(e) : e;
+            } finally {
+                readingSince = 0;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            begin();
+            try {
+                return checked(super.read(b, off, len));
+            } catch (IOException e) {
+                throw stalled ? stalledException(e) : e;
+            } finally {
+                readingSince = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            WATCHED.remove(this);
+            super.close();
+        }
+
+        private void begin() {
+            long now = System.nanoTime();
+            readingSince = now != 0 ? now : 1;
+        }
+
+        private int checked(int result) throws IOException {
+            // Stream đã bị đóng có thể trả EOF thay vì ném lỗi; không được coi là tải xong
+            if (result < 0 && stalled) {
+                throw stalledException(null);
+            }
+            return result;
+        }
+
+        private IOException stalledException(IOException cause) {
+            return new IOException("No data received for " + stall.toSeconds() + " s, connection stalled", cause);
+        }
+
+        private void abort() {
+            stalled = true;
+            WATCHED.remove(this);
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // Đang huỷ, lỗi đóng không quan trọng
+            }
+        }
+    }
+}
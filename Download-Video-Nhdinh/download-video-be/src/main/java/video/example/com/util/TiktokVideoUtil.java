@@ -1,9 +1,10 @@
 package video.example.com.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Consumer;
 
@@ -13,65 +14,79 @@ import org.slf4j.LoggerFactory;
 public class TiktokVideoUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(TiktokVideoUtil.class);
-    private static final String TEMP_DIR = System.getProperty("java.io.tmpdir");
+    public static final Set<String> ALLOWED_THUMBNAIL_DOMAINS = Set.of("tiktokcdn.com", "muscdn.com");
 
-    public static String downloadVideoUsingYtDlp(String tiktokUrl, String ytDlpPath, String proxy, Consumer<String> progressCallback) throws IOException {
+    public static boolean isValidThumbnailUrl(String url) {
+        if (url == null || !url.startsWith("https://")) {
+            return false;
+        }
+        try {
+            java.net.URI uri = new java.net.URI(url);
+            String host = uri.getHost();
+            return host != null && ALLOWED_THUMBNAIL_DOMAINS.stream().anyMatch(host::endsWith);
+        } catch (java.net.URISyntaxException e) {
+            logger.warn("Invalid thumbnail URL: {}, error: {}", url, e.getMessage());
+            return false;
+        }
+    }
+
+    public static boolean isValidVideoUrl(String url) {
+        if (url == null || !url.startsWith("https://") || !url.endsWith(".mp4")) {
+            return false;
+        }
+        try {
+            java.net.URI uri = new java.net.URI(url);
+            String host = uri.getHost();
+            return host != null && (host.endsWith("tiktokcdn.com") || host.endsWith("muscdn.com"));
+        } catch (java.net.URISyntaxException e) {
+            logger.warn("Invalid video URL: {}, error: {}", url, e.getMessage());
+            return false;
+        }
+    }
+
+    public static String downloadVideoUsingYtDlp(String tiktokUrl, File infoJson, String ytDlpPath, String proxy, File outputDir,
+                                                 ProcessPump pump, ProcessSpawner spawner, Duration timeout,
+                                                 Consumer<ProgressEvent> progressCallback) throws IOException {
         if (!new File(ytDlpPath).canExecute()) {
             throw new IOException("yt-dlp executable not found at " + ytDlpPath);
         }
 
-        String outputPath = TEMP_DIR + File.separator + UUID.randomUUID() + ".mp4";
+        String outputPath = new File(outputDir, UUID.randomUUID() + ".mp4").getPath();
         StringBuilder output = new StringBuilder();
+        YtDlpProgressParser progressParser = new YtDlpProgressParser();
 
-        ProcessBuilder pb = new ProcessBuilder(
+        List<String> command = YtDlpArgs.withProxy(proxy,
                 ytDlpPath,
                 "--user-agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36",
                 "--add-header", "Referer:https://www.tiktok.com/",
                 "--add-header", "Origin:https://www.tiktok.com",
                 "--no-check-certificate",
                 "--ignore-config",
-                proxy.isEmpty() ? "--no-cache-dir" : "--proxy", proxy.isEmpty() ? "--newline" : proxy,
+                "--no-cache-dir",
                 "--newline",
-                "--verbose", // Thêm để debug format selected và re-encode
+                "--verbose", // Thêm để debug format selected
                 "-f", "bv*[vcodec^=avc1][ext=mp4]+ba[ext=m4a]/best", // Force H.264
                 "-S", "vcodec:avc", // Sort prefer H.264 over HEVC
-                "--recode-video", "mp4", // Force MP4 container
-                "--postprocessor-args", "-c:v libx264 -preset medium -crf 23 -c:a copy", // Re-encode nếu cần
-                "-o", outputPath, tiktokUrl
+                "--merge-output-format", "mp4", // Chỉ ghép stream, việc re-encode (nếu cần) do MediaTranscoder quyết định
+                "-o", outputPath
         );
+        // Có info JSON thì không extract lại trang TikTok
+        command.addAll(YtDlpArgs.source(tiktokUrl, infoJson));
+        ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Process process = spawner.start(pb);
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-                logger.debug("yt-dlp line: {}", line);  // Log chi tiết để debug codec
-                if (progressCallback != null && line.matches(".*?(\\d{1,3})\\.\\d+%.*")) {
-                    String percent = line.replaceAll(".*?(\\d{1,3})\\.\\d+%.*", "$1");
-                    try {
-                        int progress = Integer.parseInt(percent);
-                        if (progress >= 0 && progress <= 100) {
-                            progressCallback.accept("PROGRESS_" + progress);
-                        }
-                    } catch (NumberFormatException e) {
-                        logger.warn("Invalid progress format: {}", line);
-                    }
-                }
-            }
-            logger.debug("Full yt-dlp output: {}", output.toString());  // Log full để check re-encode
-        } catch (IOException e) {
-            throw new IOException("Failed to read yt-dlp output: " + e.getMessage() + ", output: " + output.toString(), e);
-        }
-
-        try {
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                throw new IOException("yt-dlp exited with code " + exitCode + ", output: " + output.toString());
+        // Output do pump đọc, thread này chỉ chờ tiến trình thoát
+        int exitCode = pump.run(process, line -> {
+            output.append(line).append("\n");
+            logger.debug("yt-dlp line: {}", line);  // Log chi tiết để debug codec
+            if (progressCallback != null && progressParser.parse(line)) {
+                progressCallback.accept(progressParser.toEvent());
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Interrupted during download: " + e.getMessage() + ", output: " + output.toString(), e);
+        }, timeout);
+        logger.debug("Full yt-dlp output: {}", output.toString());  // Log full để check re-encode
+        if (exitCode != 0) {
+            throw new YtDlpException(exitCode, output.toString());
         }
 
         return outputPath;
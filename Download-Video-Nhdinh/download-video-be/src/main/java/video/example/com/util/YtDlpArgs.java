@@ -0,0 +1,32 @@
+package video.example.com.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dựng tham số dòng lệnh yt-dlp dùng chung giữa các util.
+ */
+public final class YtDlpArgs {
+
+    private YtDlpArgs() {
+    }
+
+    /**
+     * Chèn {@code --proxy <url>} ngay sau tên lệnh; {@code proxy} rỗng thì giữ nguyên lệnh (đi thẳng).
+     */
+    public static List<String> withProxy(String proxy, String... command) {
+        List<String> args = new ArrayList<>(List.of(command));
+        if (proxy != null && !proxy.isEmpty()) {
+            args.addAll(1, List.of("--proxy", proxy));
+        }
+        return args;
+    }
+
+    /**
+     * Nguồn cho yt-dlp: {@code --load-info-json <file>} khi đã có info JSON (không extract lại), ngược lại là URL.
+     */
+    public static List<String> source(String url, File infoJson) {
+        return infoJson != null ? List.of("--load-info-json", infoJson.getPath()) : List.of(url);
+    }
+}
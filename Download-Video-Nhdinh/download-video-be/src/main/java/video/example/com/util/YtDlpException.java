@@ -0,0 +1,40 @@
+package video.example.com.util;
+
+import java.io.IOException;
+
+/**
+ * yt-dlp thoát với mã khác 0. Giữ lại exit code và output để phân loại lỗi có nên thử lại hay không.
+ */
+public class YtDlpException extends IOException {
+
+    private final int exitCode;
+    private final String output;
+
+    public YtDlpException(int exitCode, String output) {
+        super("yt-dlp exited with code " + exitCode + summary(output));
+        this.exitCode = exitCode;
+        this.output = output != null ? output : "";
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    // Chỉ đưa dòng ERROR cuối cùng vào message, output đầy đủ lấy qua getOutput()
+    private static String summary(String output) {
+        if (output == null || output.isBlank()) {
+            return "";
+        }
+        String[] lines = output.strip().split("\n");
+        for (int i = lines.length - 1; i >= 0; i--) {
+            if (lines[i].startsWith("ERROR")) {
+                return ": " + lines[i].strip();
+            }
+        }
+        return ": " + lines[lines.length - 1].strip();
+    }
+}
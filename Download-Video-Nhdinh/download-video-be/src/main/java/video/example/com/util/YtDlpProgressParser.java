@@ -0,0 +1,221 @@
+package video.example.com.util;
+
+/**
+ * Parser cho dòng tiến độ {@code --newline} của yt-dlp, ví dụ:
+ * <pre>[download]  45.3% of ~  10.52MiB at    1.23MiB/s ETA 00:07 (frag 3/20)</pre>
+ * Duyệt ký tự trực tiếp trên CharSequence, không regex và không cấp phát cho mỗi dòng.
+ * Mỗi instance giữ trạng thái của dòng cuối cùng nên chỉ dùng trong một luồng đọc output.
+ */
+public final class YtDlpProgressParser {
+
+    private int pos;
+    private double percent;
+    private long totalBytes;
+    private long speedBytesPerSecond;
+    private int etaSeconds;
+    private int fragmentIndex;
+    private int fragmentCount;
+
+    /**
+     * @return true nếu {@code line} là dòng tiến độ; khi đó các getter trả về giá trị của dòng này
+     */
+    public boolean parse(CharSequence line) {
+        pos = skipSpaces(line, 0);
+        if (!matchWord(line, "[download]")) {
+            return false;
+        }
+        pos = skipSpaces(line, pos);
+        double value = parseNumber(line);
+        if (value < 0 || pos >= line.length() || line.charAt(pos) != '%') {
+            return false;
+        }
+        pos++;
+
+        percent = Math.min(value, 100.0);
+        totalBytes = -1;
+        speedBytesPerSecond = -1;
+        etaSeconds = -1;
+        fragmentIndex = -1;
+        fragmentCount = -1;
+
+        int length = line.length();
+        while (true) {
+            pos = skipSpaces(line, pos);
+            if (pos >= length) {
+                break;
+            }
+            if (matchWord(line, "of")) {
+                pos = skipSpaces(line, pos);
+                if (pos < length && line.charAt(pos) == '~') {
+                    pos = skipSpaces(line, pos + 1);
+                }
+                totalBytes = parseSize(line);
+            } else if (matchWord(line, "at")) {
+                pos = skipSpaces(line, pos);
+                speedBytesPerSecond = parseSize(line);
+            } else if (matchWord(line, "ETA")) {
+                pos = skipSpaces(line, pos);
+                etaSeconds = parseDuration(line);
+            } else if (matchWord(line, "(frag")) {
+                pos = skipSpaces(line, pos);
+                fragmentIndex = (int) parseNumber(line);
+                if (pos < length && line.charAt(pos) == '/') {
+                    pos++;
+                    fragmentCount = (int) parseNumber(line);
+                }
+            }
+            skipToken(line);
+        }
+        return true;
+    }
+
+    public double percent() {
+        return percent;
+    }
+
+    public int wholePercent() {
+        return (int) percent;
+    }
+
+    public long totalBytes() {
+        return totalBytes;
+    }
+
+    public long downloadedBytes() {
+        return totalBytes < 0 ? -1 : (long) (totalBytes * percent / 100.0);
+    }
+
+    public long speedBytesPerSecond() {
+        return speedBytesPerSecond;
+    }
+
+    public int etaSeconds() {
+        return etaSeconds;
+    }
+
+    public int fragmentIndex() {
+        return fragmentIndex;
+    }
+
+    public int fragmentCount() {
+        return fragmentCount;
+    }
+
+    public ProgressEvent toEvent() {
+        return new ProgressEvent(percent, downloadedBytes(), totalBytes, speedBytesPerSecond, etaSeconds, fragmentIndex, fragmentCount);
+    }
+
+    private static int skipSpaces(CharSequence line, int from) {
+        int i = from;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private void skipToken(CharSequence line) {
+        while (pos < line.length() && !Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    /**
+     * Khớp {@code word} tại vị trí hiện tại (phải kết thúc bằng khoảng trắng hoặc hết dòng) và tiến con trỏ.
+     */
+    private boolean matchWord(CharSequence line, String word) {
+        int end = pos + word.length();
+        if (end > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (line.charAt(pos + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        if (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+            return false;
+        }
+        pos = end;
+        return true;
+    }
+
+    /**
+     * Số thập phân không dấu tại vị trí hiện tại, -1 nếu không có chữ số.
+     */
+    private double parseNumber(CharSequence line) {
+        int start = pos;
+        long integer = 0;
+        while (pos < line.length() && isDigit(line.charAt(pos))) {
+            integer = integer * 10 + (line.charAt(pos) - '0');
+            pos++;
+        }
+        double value = integer;
+        if (pos < line.length() && line.charAt(pos) == '.') {
+            pos++;
+            double scale = 0.1;
+            while (pos < line.length() && isDigit(line.charAt(pos))) {
+                value += (line.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+        }
+        return pos == start ? -1 : value;
+    }
+
+    /**
+     * Kích thước dạng "10.52MiB" hoặc tốc độ "1.23MiB/s" (phần "/s" được bỏ qua), -1 nếu Unknown.
+     */
+    private long parseSize(CharSequence line) {
+        double value = parseNumber(line);
+        if (value < 0) {
+            return -1;
+        }
+        long multiplier;
+        if (pos < line.length()) {
+            char unit = line.charAt(pos);
+            boolean binary = pos + 1 < line.length() && line.charAt(pos + 1) == 'i';
+            long base = binary ? 1024 : 1000;
+            multiplier = switch (unit) {
+                case 'K', 'k' -> base;
+                case 'M' -> base * base;
+                case 'G' -> base * base * base;
+                case 'T' -> base * base * base * base;
+                default -> 1;
+            };
+        } else {
+            multiplier = 1;
+        }
+        return (long) (value * multiplier);
+    }
+
+    /**
+     * Thời lượng "SS", "MM:SS" hoặc "HH:MM:SS" tính bằng giây, -1 nếu Unknown.
+     */
+    private int parseDuration(CharSequence line) {
+        int seconds = 0;
+        boolean any = false;
+        while (pos < line.length()) {
+            int start = pos;
+            int part = 0;
+            while (pos < line.length() && isDigit(line.charAt(pos))) {
+                part = part * 10 + (line.charAt(pos) - '0');
+                pos++;
+            }
+            if (pos == start) {
+                break;
+            }
+            any = true;
+            seconds = seconds * 60 + part;
+            if (pos < line.length() && line.charAt(pos) == ':') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return any ? seconds : -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
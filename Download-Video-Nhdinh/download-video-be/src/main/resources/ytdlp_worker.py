@@ -0,0 +1,86 @@
+"""Worker yt-dlp chạy lâu dài cho YtDlpWorkerPool.
+
+Giao thức JSON lines trên stdin/stdout:
+  -> {"id": 1, "args": ["--dump-single-json", "https://..."]}
+  <- {"type": "ready", "pid": 123, "version": "2024.08.06"}        (một lần, sau khi import xong yt_dlp)
+  <- {"id": 1, "type": "line", "stream": "out" | "err", "line": "..."}
+  <- {"id": 1, "type": "exit", "code": 0}
+Không import được yt_dlp thì gửi {"type": "fatal", "error": "..."} rồi thoát.
+"""
+import io
+import json
+import os
+import sys
+
+PROTOCOL = sys.stdout
+
+
+def send(message):
+    PROTOCOL.write(json.dumps(message, ensure_ascii=False) + "\n")
+    PROTOCOL.flush()
+
+
+try:
+    import yt_dlp
+    from yt_dlp.version import __version__ as VERSION
+except Exception as e:  # noqa: BLE001
+    send({"type": "fatal", "error": "cannot import yt_dlp: %s" % e})
+    sys.exit(3)
+
+
+class LineWriter(io.TextIOBase):
+    """Gom output của yt-dlp thành từng dòng và gửi đi dưới dạng message "line"."""
+
+    def __init__(self, job_id, stream):
+        super().__init__()
+        self.job_id = job_id
+        self.stream = stream
+        self.buffer_text = ""
+
+    @property
+    def encoding(self):
+        return "utf-8"
+
+    def isatty(self):
+        return False
+
+    def writable(self):
+        return True
+
+    def write(self, text):
+        self.buffer_text += text.replace("\r", "\n")
+        while "\n" in self.buffer_text:
+            line, self.buffer_text = self.buffer_text.split("\n", 1)
+            if line:
+                send({"id": self.job_id, "type": "line", "stream": self.stream, "line": line})
+        return len(text)
+
+    def drain(self):
+        if self.buffer_text:
+            send({"id": self.job_id, "type": "line", "stream": self.stream, "line": self.buffer_text})
+            self.buffer_text = ""
+
+
+def run(job):
+    out = LineWriter(job["id"], "out")
+    err = LineWriter(job["id"], "err")
+    sys.stdout, sys.stderr = out, err
+    code = 0
+    try:
+        yt_dlp.main(job["args"])
+    except SystemExit as e:
+        code = e.code if isinstance(e.code, int) else (0 if e.code is None else 1)
+    except BaseException as e:  # noqa: BLE001
+        err.write("ERROR: worker: %s\n" % e)
+        code = 1
+    finally:
+        out.drain()
+        err.drain()
+        sys.stdout, sys.stderr = PROTOCOL, sys.__stderr__
+    send({"id": job["id"], "type": "exit", "code": code})
+
+
+send({"type": "ready", "pid": os.getpid(), "version": VERSION})
+for raw in sys.stdin:
+    if raw.strip():
+        run(json.loads(raw))
@@ -3,7 +3,9 @@ package Facebook.example.com.video;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+import video.example.com.Application;
+
+@SpringBootTest(classes = Application.class)
 class FacebookApplicationTests {
 
 	@Test
@@ -0,0 +1,71 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveLimitTest {
+
+    @Test
+    void growsAdditivelyAndShrinksMultiplicatively() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit("test", 4, 1, 10, 0, 0.5, 2.0, 0);
+        // limit += 1/limit sau mỗi lần thành công: cần khoảng 4 lần để lên 5
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(100, true);
+        }
+        assertEquals(5, limit.limit());
+
+        assertTrue(limit.tryAcquire());
+        limit.release(100, false);
+        assertEquals(2, limit.limit());
+
+        // Chậm hơn 2 lần mức nền cũng tính là tín hiệu quá tải
+        assertTrue(limit.tryAcquire());
+        limit.release(1000, true);
+        assertEquals(1, limit.limit());
+        assertEquals(0, limit.inFlight());
+    }
+
+    @Test
+    void cooldownLimitsConsecutiveDecreases() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit("test", 8, 1, 10, 0, 0.5, 2.0, 60_000);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(-1, false);
+        }
+        assertEquals(4, limit.limit());
+    }
+
+    @Test
+    void rejectsOnceLimitAndQueueAreFull() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit("test", 1, 1, 1, 1, 0.5, 2.0, 0);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.hasCapacity());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limit.tryAcquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        while (limit.hasCapacity()) {
+            Thread.onSpinWait();
+        }
+        assertFalse(limit.tryAcquire());
+        assertTrue(limit.retryAfterSeconds() >= 1);
+
+        limit.release(10, true);
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limit.inFlight());
+        limit.release(10, true);
+        assertTrue(limit.hasCapacity());
+    }
+}
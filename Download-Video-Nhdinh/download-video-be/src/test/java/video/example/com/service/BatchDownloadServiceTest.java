@@ -0,0 +1,156 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import video.example.com.service.VideoUrlService.VideoRef;
+import video.example.com.util.ProgressEvent;
+
+class BatchDownloadServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BatchDownloadService service(VideoDownloader downloader) throws IOException {
+        VideoTaskExecutor executor = new VideoTaskExecutor();
+        executor.init();
+        VideoUrlService urls = new VideoUrlService() {
+            @Override
+            protected String fetchRedirectTarget(String url) {
+                return null;
+            }
+        };
+        JobJournal journal = new JobJournal(tempDir.resolve("jobs.journal"), false, 1000);
+        journal.open();
+        DownloadJobService jobs = new DownloadJobService(journal, executor, urls, downloader, new SseProgressChannels());
+        StorageManager storage = new StorageManager(tempDir.resolve("files"), Long.MAX_VALUE, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+        return new BatchDownloadService(executor, urls, downloader, new SseProgressChannels(), jobs, storage);
+    }
+
+    private static void awaitFinished(DownloadBatch batch) throws InterruptedException {
+        for (int i = 0; i < 500 && !batch.isFinished(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(batch.isFinished());
+    }
+
+    @Test
+    void runsAtMostMaxParallelItems() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        VideoDownloader downloader = new VideoDownloader(new DownloadCache(), null, null, null, null, null, null, null, null, null) {
+            @Override
+            public String download(VideoRef ref, String title, Consumer<ProgressEvent> progressCallback) throws IOException {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    progressCallback.accept(ProgressEvent.ofPercent(50));
+                    Thread.sleep(30);
+                    Path file = Files.writeString(tempDir.resolve(ref.videoId() + ".mp4"), ref.key());
+                    return file.toString();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        List<String> urls = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            urls.add("https://www.tiktok.com/@user/video/" + i);
+        }
+        urls.add("https://www.tiktok.com/@user/video/1");
+
+        DownloadBatch batch = service(downloader).start(urls);
+        awaitFinished(batch);
+
+        assertEquals(DownloadBatch.Status.DONE, batch.status());
+        assertEquals(10, batch.view().total());
+        assertEquals(10, batch.view().completed());
+        assertEquals(100.0, batch.percent());
+        assertTrue(peak.get() <= 4, "peak parallelism " + peak.get());
+    }
+
+    @Test
+    void zipContainsStoredEntriesWithUniqueNames() throws Exception {
+        Path first = Files.createDirectory(tempDir.resolve("a")).resolve("video.mp4");
+        Path second = Files.createDirectory(tempDir.resolve("b")).resolve("video.mp4");
+        Files.write(first, new byte[]{1, 2, 3});
+        Files.write(second, new byte[]{4, 5, 6, 7});
+        VideoDownloader downloader = new VideoDownloader(new DownloadCache(), null, null, null, null, null, null, null, null, null) {
+            @Override
+            public String download(VideoRef ref, String title, Consumer<ProgressEvent> progressCallback) throws IOException {
+                return switch (ref.videoId()) {
+                    case "1" -> first.toString();
+                    case "2" -> second.toString();
+                    default -> throw new IOException("Video unavailable");
+                };
+            }
+        };
+        BatchDownloadService service = service(downloader);
+        DownloadBatch batch = service.start(List.of(
+                "https://www.facebook.com/watch/?v=1",
+                "https://www.facebook.com/watch/?v=2",
+                "https://www.facebook.com/watch/?v=3"));
+        awaitFinished(batch);
+        assertEquals(1, batch.view().failed());
+        assertEquals("Video unavailable", batch.view().items().get(2).error());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeZip(batch, out);
+
+        List<String> names = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                names.add(entry.getName());
+                contents.add(zip.readAllBytes());
+            }
+        }
+        assertEquals(List.of("video.mp4", "video (1).mp4"), names);
+        assertArrayEquals(new byte[]{1, 2, 3}, contents.get(0));
+        assertArrayEquals(new byte[]{4, 5, 6, 7}, contents.get(1));
+    }
+
+    @Test
+    void rejectsUnsupportedUrls() throws Exception {
+        BatchDownloadService service = service(new VideoDownloader(new DownloadCache(), null, null, null, null, null, null, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> service.start(List.of("https://example.com/video.mp4")));
+        assertThrows(IllegalArgumentException.class, () -> service.start(List.of()));
+        assertNull(service.get("missing"));
+    }
+
+    @Test
+    void crcMatchesJdk() throws Exception {
+        File file = tempDir.resolve("crc.bin").toFile();
+        byte[] data = new byte[200_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        Files.write(file.toPath(), data);
+        CRC32 expected = new CRC32();
+        expected.update(data);
+        assertEquals(expected.getValue(), BatchDownloadService.crc32(file));
+    }
+}
@@ -0,0 +1,182 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class CdnProxyTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private HttpServer server;
+    private final byte[] video = new byte[200_000];
+
+    @BeforeEach
+    void start() throws IOException {
+        for (int i = 0; i < video.length; i++) {
+            video[i] = (byte) (i * 31);
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v.mp4", this::serve);
+        server.createContext("/expired.mp4", exchange -> {
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+        });
+        server.createContext("/moved.mp4", exchange -> redirect(exchange, "/v.mp4"));
+        server.createContext("/escape.mp4", exchange ->
+                redirect(exchange, "http://localhost:" + server.getAddress().getPort() + "/v.mp4"));
+        server.createContext("/loop.mp4", exchange -> redirect(exchange, "/loop.mp4"));
+        server.createContext("/stall.mp4", exchange -> {
+            exchange.sendResponseHeaders(200, video.length);
+            exchange.getResponseBody().write(video, 0, 1000);
+            exchange.getResponseBody().flush();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private static void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        exchange.sendResponseHeaders(302, -1);
+        exchange.close();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "video/mp4");
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        Matcher m = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+        int start = 0;
+        int end = video.length - 1;
+        int status = 200;
+        if (m.matches()) {
+            start = Integer.parseInt(m.group(1));
+            end = Integer.parseInt(m.group(2));
+            status = 206;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + video.length);
+        }
+        exchange.sendResponseHeaders(status, end - start + 1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(video, start, end - start + 1);
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    void forwardsRangeAndStreamsPartialContent() throws Exception {
+        CdnProxy proxy = new CdnProxy("127.0.0.1", 16, 2);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/proxy/video");
+        request.addHeader("Range", "bytes=1000-2999");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        proxy.stream(url("/v.mp4"), request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 1000-2999/200000", response.getHeader("Content-Range"));
+        assertEquals("video/mp4", response.getContentType());
+        assertEquals("\"v1\"", response.getHeader("ETag"));
+        assertArrayEquals(Arrays.copyOfRange(video, 1000, 3000), response.getContentAsByteArray());
+        assertEquals(1, proxy.pooledBuffers());
+    }
+
+    @Test
+    void streamsWholeFileAndReusesBuffer() throws Exception {
+        CdnProxy proxy = new CdnProxy("127.0.0.1", 16, 2);
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            proxy.stream(url("/v.mp4"), new MockHttpServletRequest("GET", "/api/proxy/video"), response);
+            assertEquals(200, response.getStatus());
+            assertArrayEquals(video, response.getContentAsByteArray());
+        }
+        assertEquals(1, proxy.pooledBuffers());
+    }
+
+    @Test
+    void mapsUpstreamFailureToBadGateway() throws Exception {
+        CdnProxy proxy = new CdnProxy("127.0.0.1", 16, 2);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        proxy.stream(url("/expired.mp4"), new MockHttpServletRequest("GET", "/api/proxy/video"), response);
+        assertEquals(502, response.getStatus());
+    }
+
+    @Test
+    void onlyProxiesAllowlistedHosts() throws Exception {
+        CdnProxy proxy = new CdnProxy("fbcdn.net, cdninstagram.com", 16, 2);
+        assertTrue(proxy.isAllowed("https://video.xx.fbcdn.net/v/t42/abc.mp4?oe=65F0A1B2"));
+        assertTrue(proxy.isAllowed("https://scontent.cdninstagram.com/o1/v/t16/f1/m82/abc.mp4"));
+        assertFalse(proxy.isAllowed("https://evilfbcdn.net/abc.mp4"));
+        assertFalse(proxy.isAllowed("https://fbcdn.net.evil.com/abc.mp4"));
+        assertFalse(proxy.isAllowed("file:///etc/passwd"));
+        assertFalse(proxy.isAllowed(null));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        proxy.stream(url("/v.mp4"), new MockHttpServletRequest("GET", "/api/proxy/video"), response);
+        assertEquals(403, response.getStatus());
+    }
+
+    @Test
+    void followsRedirectsOnlyWithinAllowlist() throws Exception {
+        CdnProxy proxy = new CdnProxy("127.0.0.1", 16, 2);
+        MockHttpServletResponse moved = new MockHttpServletResponse();
+        proxy.stream(url("/moved.mp4"), new MockHttpServletRequest("GET", "/api/proxy/video"), moved);
+        assertEquals(200, moved.getStatus());
+        assertArrayEquals(video, moved.getContentAsByteArray());
+
+        // localhost không nằm trong allowlist dù cùng server
+        MockHttpServletResponse escaped = new MockHttpServletResponse();
+        proxy.stream(url("/escape.mp4"), new MockHttpServletRequest("GET", "/api/proxy/video"), escaped);
+        assertEquals(502, escaped.getStatus());
+        assertEquals(0, escaped.getContentAsByteArray().length);
+
+        MockHttpServletResponse loop = new MockHttpServletResponse();
+        proxy.stream(url("/loop.mp4"), new MockHttpServletRequest("GET", "/api/proxy/video"), loop);
+        assertEquals(502, loop.getStatus());
+    }
+
+    @Test
+    void abortsStalledUpstream() {
+        CdnProxy proxy = new CdnProxy("127.0.0.1", 16, 2);
+        ReflectionTestUtils.setField(proxy, "timeoutSeconds", 1L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long start = System.nanoTime();
+
+        assertThrows(IOException.class,
+                () -> proxy.stream(url("/stall.mp4"), new MockHttpServletRequest("GET", "/api/proxy/video"), response));
+        assertTrue(System.nanoTime() - start < 8_000_000_000L);
+        assertEquals(1000, response.getContentAsByteArray().length);
+    }
+}
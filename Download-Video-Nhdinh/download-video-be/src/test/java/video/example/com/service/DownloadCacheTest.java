@@ -0,0 +1,67 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import video.example.com.util.ProgressEvent;
+
+class DownloadCacheTest {
+
+    @Test
+    void concurrentRequestsShareOneDownload() throws Exception {
+        DownloadCache cache = new DownloadCache();
+        File file = Files.createTempFile("download-cache", ".mp4").toFile();
+        file.deleteOnExit();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> joinedProgress = new CopyOnWriteArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = pool.submit(() -> cache.getOrDownload("tiktok:video/1", null, callback -> {
+                runs.incrementAndGet();
+                callback.accept(ProgressEvent.ofPercent(10));
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                callback.accept(ProgressEvent.ofPercent(100));
+                return file.getAbsolutePath();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> second = pool.submit(() -> cache.getOrDownload("tiktok:video/1", event -> joinedProgress.add(event.wholePercent()), callback -> {
+                runs.incrementAndGet();
+                return "unexpected";
+            }));
+            while (joinedProgress.isEmpty()) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertEquals(file.getAbsolutePath(), first.get(5, TimeUnit.SECONDS));
+            assertEquals(file.getAbsolutePath(), second.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(10, 100), joinedProgress);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(file.getAbsolutePath(), cache.getOrDownload("tiktok:video/1", null, callback -> "unexpected"));
+        assertEquals(1, runs.get());
+    }
+}
@@ -0,0 +1,126 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import video.example.com.service.JobJournal.Entry;
+import video.example.com.service.JobJournal.State;
+import video.example.com.service.VideoUrlService.VideoRef;
+import video.example.com.util.ProgressEvent;
+
+class DownloadJobServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recoversUnfinishedJobsAndGivesUpOnCrashLoops() throws Exception {
+        Path file = tempDir.resolve("jobs.journal");
+        JobJournal before = new JobJournal(file, false, 1000);
+        before.open();
+        before.append(new Entry("a", State.RUNNING, Platform.INSTAGRAM, "https://www.instagram.com/reel/abc/", 1, 0, null, null));
+        before.append(new Entry("b", State.QUEUED, Platform.TIKTOK, "https://www.tiktok.com/@u/video/1", 3, 0, null, null));
+        before.close();
+
+        JobJournal journal = new JobJournal(file, false, 1000);
+        journal.open();
+        VideoTaskExecutor executor = new VideoTaskExecutor();
+        executor.init();
+        List<String> downloaded = new CopyOnWriteArrayList<>();
+        VideoDownloader downloader = new VideoDownloader(new DownloadCache(), null, null, null, null, null, null, null, null, null) {
+            @Override
+            public String download(VideoRef ref, String title, Consumer<ProgressEvent> progressCallback,
+                                   RetryPolicy.RetryListener retryListener) throws IOException {
+                downloaded.add(ref.key());
+                return tempDir.resolve("abc.mp4").toString();
+            }
+        };
+        DownloadJobService service = new DownloadJobService(journal, executor, new VideoUrlService(), downloader, new SseProgressChannels());
+
+        service.recover();
+        executor.shutdown();
+        journal.close();
+
+        assertEquals(List.of("instagram:abc"), downloaded);
+        assertEquals(0, journal.activeCount());
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.stream().anyMatch(line -> line.contains("\"id\":\"a\"") && line.contains("\"DONE\"") && line.contains("\"attempt\":2")));
+        assertTrue(lines.stream().anyMatch(line -> line.contains("\"id\":\"b\"") && line.contains("\"FAILED\"")));
+    }
+
+    @Test
+    void jobInterruptedByShutdownIsRecoveredOnNextStart() throws Exception {
+        Path file = tempDir.resolve("jobs.journal");
+        JobJournal journal = new JobJournal(file, false, 1000);
+        journal.open();
+        VideoTaskExecutor executor = new VideoTaskExecutor();
+        ReflectionTestUtils.setField(executor, "shutdownTimeoutSeconds", 0L);
+        executor.init();
+        CountDownLatch started = new CountDownLatch(1);
+        VideoDownloader downloader = new VideoDownloader(new DownloadCache(), null, null, null, null, null, null, null, null, null) {
+            @Override
+            public String download(VideoRef ref, String title, Consumer<ProgressEvent> progressCallback,
+                                   RetryPolicy.RetryListener retryListener) throws IOException {
+                started.countDown();
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+                return null;
+            }
+        };
+        DownloadJobService service = new DownloadJobService(journal, executor, new VideoUrlService(), downloader, new SseProgressChannels());
+
+        DownloadJob job = service.submit(Platform.INSTAGRAM, "https://www.instagram.com/reel/abc/", null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        journal.close();
+
+        JobJournal restarted = new JobJournal(file, false, 1000);
+        restarted.open();
+        assertEquals(List.of(job.id()), restarted.recovered().stream().map(Entry::id).toList());
+        assertEquals(State.RUNNING, restarted.recovered().get(0).state());
+        restarted.close();
+    }
+
+    @Test
+    void failedOnInterruptedThreadKeepsJobRunning() throws Exception {
+        Path file = tempDir.resolve("jobs.journal");
+        JobJournal journal = new JobJournal(file, false, 1000);
+        journal.open();
+        VideoTaskExecutor executor = new VideoTaskExecutor();
+        executor.init();
+        DownloadJobService service = new DownloadJobService(journal, executor, new VideoUrlService(), null, new SseProgressChannels());
+
+        // Giống luồng SSE của controller: create -> running -> failed khi thread bị ngắt lúc tắt server
+        DownloadJob job = service.create(Platform.TIKTOK, "https://www.tiktok.com/@u/video/1");
+        service.running(job);
+        boolean[] recorded = new boolean[1];
+        Thread worker = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            recorded[0] = service.failed(job, "Interrupted");
+        });
+        worker.start();
+        worker.join();
+        assertFalse(recorded[0]);
+        assertTrue(service.failed(job, "boom"));
+        executor.shutdown();
+        journal.close();
+    }
+}
@@ -0,0 +1,97 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.service.JobJournal.State;
+import video.example.com.util.ProgressEvent;
+
+class DownloadJobTest {
+
+    /**
+     * Emitter ghi lại "id|data" của từng event text.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            String id = null;
+            boolean dataNext = false;
+            for (DataWithMediaType item : items) {
+                if (dataNext && item.getData() instanceof String text) {
+                    events.add(id + "|" + text);
+                }
+                String raw = String.valueOf(item.getData());
+                dataNext = raw.endsWith("data:");
+                if (dataNext) {
+                    int idStart = raw.indexOf("id:");
+                    id = idStart < 0 ? null : raw.substring(idStart + 3, raw.indexOf('\n', idStart));
+                }
+            }
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            send(builder.build());
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+
+    private static SseProgressChannel channel(RecordingEmitter emitter, DownloadJob job) {
+        return new SseProgressChannel(emitter, (target, event) -> SseProgress.send(target, event, String.valueOf(job.lastProgressId())), 0, 16);
+    }
+
+    @Test
+    void reconnectReplaysOnlyMissedEvents() throws Exception {
+        DownloadJob job = new DownloadJob("job-1", Platform.TIKTOK, "https://www.tiktok.com/@u/video/1", null, 1, 8);
+        job.markRunning();
+        job.progress(ProgressEvent.ofPercent(10));
+        job.message("ERROR_Retry_timeout");
+        job.progress(ProgressEvent.ofPercent(40));
+        job.progress(ProgressEvent.ofPercent(70));
+
+        RecordingEmitter first = new RecordingEmitter();
+        job.subscribe(channel(first, job), 0);
+        RecordingEmitter second = new RecordingEmitter();
+        // Client đã nhận tới event 2 (ERROR_Retry_) trước khi rớt mạng
+        job.subscribe(channel(second, job), 2);
+        assertEquals(2, job.subscriberCount());
+
+        job.complete("/tmp/video.mp4");
+        assertTrue(first.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(second.completed.await(5, TimeUnit.SECONDS));
+
+        assertEquals(State.DONE, job.state());
+        assertEquals(0, job.subscriberCount());
+        // Chỉ gửi lại progress mới nhất, không gửi 10 và 40
+        assertEquals(List.of("4|PROGRESS_70", "2|ERROR_Retry_timeout", "5|DONE_/tmp/video.mp4"), first.events);
+        assertEquals(List.of("4|PROGRESS_70", "5|DONE_/tmp/video.mp4"), second.events);
+
+        RecordingEmitter late = new RecordingEmitter();
+        job.subscribe(channel(late, job), 4);
+        assertTrue(late.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("5|DONE_/tmp/video.mp4"), late.events);
+    }
+
+    @Test
+    void parsesLastEventIdLeniently() {
+        assertEquals(0, DownloadJobService.parseEventId(null));
+        assertEquals(0, DownloadJobService.parseEventId("abc"));
+        assertEquals(12, DownloadJobService.parseEventId(" 12 "));
+    }
+}
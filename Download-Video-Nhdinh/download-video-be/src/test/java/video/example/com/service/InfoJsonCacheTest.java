@@ -0,0 +1,138 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import video.example.com.service.VideoUrlService.VideoRef;
+import video.example.com.util.ProcessPump;
+import video.example.com.util.YtDlpException;
+
+class InfoJsonCacheTest {
+
+    private static final String INFO = """
+            {"id": "123", "title": "Cat video", "thumbnail": "https://scontent.cdninstagram.com/t.jpg",
+             "formats": [
+               {"format_id": "dash-audio", "ext": "m4a", "vcodec": "none", "acodec": "mp4a.40.2", "url": "https://cdn/a.m4a"},
+               {"format_id": "sd", "ext": "mp4", "vcodec": "avc1", "acodec": "mp4a.40.2", "width": 640, "height": 360, "filesize": 1000, "url": "https://cdn/sd.mp4"},
+               {"format_id": "hd", "ext": "mp4", "vcodec": "avc1", "acodec": "mp4a.40.2", "width": 1280, "height": 720, "url": "https://cdn/hd.mp4"},
+               {"format_id": "dash-video", "ext": "mp4", "vcodec": "avc1", "acodec": "none", "url": "https://cdn/v.mp4"}
+             ]}
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private final ProcessPump pump = new ProcessPump(1);
+
+    @AfterEach
+    void tearDown() {
+        pump.close();
+    }
+
+    private InfoJsonCache cache(String script) throws Exception {
+        Path ytDlp = tempDir.resolve("yt-dlp");
+        Files.writeString(ytDlp, "#!/bin/sh\n" + script);
+        assertTrue(ytDlp.toFile().setExecutable(true));
+        ToolRegistry tools = new ToolRegistry();
+        ReflectionTestUtils.setField(tools, "ytDlpPath", ytDlp.toString());
+        InfoJsonCache cache = new InfoJsonCache(tools, null, VideoMetrics.noop(), pump);
+        ReflectionTestUtils.setField(cache, "dir", tempDir.resolve("info").toString());
+        cache.init();
+        return cache;
+    }
+
+    @Test
+    void parsesTitleThumbnailAndFormats() throws Exception {
+        InfoJsonCache.Info info = cache("").parse(Path.of("x.info.json"), INFO);
+        assertEquals("Cat video", info.title());
+        assertEquals(4, info.formats().size());
+        assertEquals(new InfoJsonCache.Format("sd", "mp4", "avc1", "mp4a.40.2", 640, 360, 1000, "https://cdn/sd.mp4"), info.formats().get(1));
+        assertEquals(-1, info.formats().get(2).filesize());
+        // Format có cả hình và tiếng tốt nhất, bỏ qua stream DASH chỉ có hình
+        assertEquals("https://cdn/hd.mp4", info.progressiveMp4Url());
+        assertNull(info.url());
+    }
+
+    @Test
+    void missingCodecIsUnknownNotNone() throws Exception {
+        // Extractor Facebook/Instagram thường không ghi vcodec/acodec cho link MP4 progressive
+        InfoJsonCache.Info info = cache("").parse(Path.of("x.info.json"), """
+                {"formats": [
+                  {"format_id": "dash-audio", "ext": "m4a", "vcodec": "none", "url": "https://cdn/a.m4a"},
+                  {"format_id": "sd", "ext": "mp4", "url": "https://cdn/sd.mp4"},
+                  {"format_id": "dash-video", "ext": "mp4", "acodec": "none", "url": "https://cdn/v.mp4"}
+                ]}
+                """);
+        assertNull(info.formats().get(1).vcodec());
+        assertEquals("https://cdn/sd.mp4", info.progressiveMp4Url());
+    }
+
+    @Test
+    void extractsOncePerVideoUntilInvalidated() throws Exception {
+        Path calls = tempDir.resolve("calls");
+        InfoJsonCache cache = cache("echo \"$@\" >> " + calls + "\ncat <<'JSON'\n" + INFO + "JSON\n");
+        VideoRef ref = new VideoRef(Platform.INSTAGRAM, "abc", "https://www.instagram.com/reel/abc/");
+
+        InfoJsonCache.Info first = cache.get(ref, "");
+        assertSame(first, cache.get(ref, ""));
+        assertEquals("Cat video", first.title());
+        assertTrue(Files.readString(first.file()).contains("\"hd\""));
+
+        List<String> invocations = Files.readAllLines(calls);
+        assertEquals(List.of("--dump-single-json --no-warnings https://www.instagram.com/reel/abc/"), invocations);
+
+        cache.invalidate(ref.key());
+        cache.get(ref, "http://127.0.0.1:3128");
+        assertEquals("--proxy http://127.0.0.1:3128 --dump-single-json --no-warnings https://www.instagram.com/reel/abc/",
+                Files.readAllLines(calls).get(1));
+    }
+
+    @Test
+    void concurrentMissesShareOneExtract() throws Exception {
+        Path calls = tempDir.resolve("calls");
+        InfoJsonCache cache = cache("echo \"$@\" >> " + calls + "\nsleep 1\ncat <<'JSON'\n" + INFO + "JSON\n");
+        VideoRef ref = new VideoRef(Platform.INSTAGRAM, "abc", "https://www.instagram.com/reel/abc/");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<InfoJsonCache.Info>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.get(ref, "")));
+            }
+            InfoJsonCache.Info first = results.get(0).get();
+            for (Future<InfoJsonCache.Info> result : results) {
+                assertSame(first, result.get());
+            }
+        }
+        assertEquals(1, Files.readAllLines(calls).size());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void surfacesYtDlpErrorsForRetryClassification() throws Exception {
+        InfoJsonCache cache = cache("echo 'ERROR: [Instagram] abc: This video is unavailable' >&2\nexit 1\n");
+        VideoRef ref = new VideoRef(Platform.INSTAGRAM, "abc", "https://www.instagram.com/reel/abc/");
+        YtDlpException e = assertThrows(YtDlpException.class, () -> cache.get(ref, ""));
+        assertEquals(1, e.getExitCode());
+        assertTrue(e.getMessage().contains("This video is unavailable"));
+        try (Stream<Path> files = Files.list(tempDir.resolve("info"))) {
+            assertTrue(files.findAny().isEmpty());
+        }
+    }
+}
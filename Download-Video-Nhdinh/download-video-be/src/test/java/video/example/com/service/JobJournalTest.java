@@ -0,0 +1,72 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import video.example.com.service.JobJournal.Entry;
+import video.example.com.service.JobJournal.State;
+
+class JobJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Entry entry(String id, State state) {
+        return new Entry(id, state, Platform.TIKTOK, "https://www.tiktok.com/@u/video/" + id, 1, 0, null, null);
+    }
+
+    @Test
+    void unfinishedJobsAreRecoveredAfterRestart() throws Exception {
+        Path file = tempDir.resolve("jobs.journal");
+        JobJournal journal = new JobJournal(file, true, 1000);
+        journal.open();
+        journal.append(entry("1", State.QUEUED));
+        journal.append(entry("2", State.QUEUED));
+        journal.append(entry("3", State.QUEUED));
+        journal.append(entry("1", State.RUNNING));
+        journal.append(entry("2", State.RUNNING));
+        journal.append(entry("2", State.DONE));
+        journal.close();
+        // Crash giữa lúc ghi để lại dòng cắt dở
+        Files.writeString(file, "{\"id\":\"4\",\"sta", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        JobJournal reopened = new JobJournal(file, true, 1000);
+        reopened.open();
+        List<Entry> recovered = reopened.recovered();
+        assertEquals(List.of("1", "3"), recovered.stream().map(Entry::id).toList());
+        assertEquals(State.RUNNING, recovered.get(0).state());
+        assertEquals(Platform.TIKTOK, recovered.get(0).platform());
+        // Sau khi mở, journal đã được compact chỉ còn job dở
+        assertEquals(2, Files.readAllLines(file).size());
+        reopened.close();
+    }
+
+    @Test
+    void compactsWhenThresholdReached() throws Exception {
+        Path file = tempDir.resolve("jobs.journal");
+        JobJournal journal = new JobJournal(file, false, 10);
+        journal.open();
+        for (int i = 0; i < 25; i++) {
+            journal.append(entry(String.valueOf(i), State.QUEUED));
+            journal.append(entry(String.valueOf(i), State.DONE));
+        }
+        journal.append(entry("live", State.RUNNING));
+        journal.close();
+
+        assertTrue(Files.readAllLines(file).size() < 10);
+        assertEquals(1, journal.activeCount());
+        JobJournal reopened = new JobJournal(file, false, 10);
+        reopened.open();
+        assertEquals(List.of("live"), reopened.recovered().stream().map(Entry::id).toList());
+        reopened.close();
+    }
+}
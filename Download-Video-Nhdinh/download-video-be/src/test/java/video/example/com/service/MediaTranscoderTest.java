@@ -0,0 +1,113 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import video.example.com.util.ProcessPump;
+
+class MediaTranscoderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static MediaTranscoder transcoder() {
+        ToolRegistry tools = new ToolRegistry();
+        ReflectionTestUtils.setField(tools, "ffmpegPath", "ffmpeg");
+        return new MediaTranscoder(tools, VideoMetrics.noop(), null);
+    }
+
+    @Test
+    void parsesFfprobeJson() throws Exception {
+        String json = """
+                {
+                  "programs": [],
+                  "streams": [
+                    {"codec_name": "hevc", "codec_type": "video"},
+                    {"codec_name": "aac", "codec_type": "audio"},
+                    {"codec_name": "h264", "codec_type": "video"}
+                  ],
+                  "format": {"format_name": "mov,mp4,m4a,3gp,3g2,mj2"}
+                }
+                """;
+        MediaTranscoder.Probe probe = transcoder().parseProbe(json);
+        assertEquals(new MediaTranscoder.Probe("mov,mp4,m4a,3gp,3g2,mj2", "hevc", "aac"), probe);
+
+        MediaTranscoder.Probe silent = transcoder().parseProbe("""
+                {"streams": [{"codec_name": "h264", "codec_type": "video"}], "format": {"format_name": "matroska,webm"}}
+                """);
+        assertNull(silent.audioCodec());
+    }
+
+    @Test
+    void plansCheapestAction() {
+        MediaTranscoder.Plan keep = MediaTranscoder.plan(new MediaTranscoder.Probe("mov,mp4,m4a,3gp,3g2,mj2", "h264", "aac"));
+        assertEquals(MediaTranscoder.Action.KEEP, keep.action());
+
+        MediaTranscoder.Plan remux = MediaTranscoder.plan(new MediaTranscoder.Probe("matroska,webm", "h264", null));
+        assertEquals(new MediaTranscoder.Plan(MediaTranscoder.Action.REMUX, true, true), remux);
+
+        // HEVC phải encode lại, audio AAC vẫn copy
+        MediaTranscoder.Plan hevc = MediaTranscoder.plan(new MediaTranscoder.Probe("mov,mp4,m4a,3gp,3g2,mj2", "hevc", "aac"));
+        assertEquals(new MediaTranscoder.Plan(MediaTranscoder.Action.TRANSCODE, false, true), hevc);
+
+        MediaTranscoder.Plan opus = MediaTranscoder.plan(new MediaTranscoder.Probe("matroska,webm", "h264", "opus"));
+        assertEquals(new MediaTranscoder.Plan(MediaTranscoder.Action.TRANSCODE, true, false), opus);
+    }
+
+    @Test
+    void buildsCopyOrEncodeArgsPerStream() {
+        MediaTranscoder transcoder = transcoder();
+        Path in = Path.of("video.mp4");
+        Path out = Path.of("video.mp4.part");
+
+        List<String> remux = transcoder.command(new MediaTranscoder.Plan(MediaTranscoder.Action.REMUX, true, true), in, out, "medium", 23);
+        assertEquals(List.of("ffmpeg", "-hide_banner", "-nostdin", "-y", "-i", "video.mp4", "-c:v", "copy", "-c:a", "copy",
+                "-movflags", "+faststart", "-f", "mp4", "video.mp4.part"), remux);
+
+        List<String> encode = transcoder.command(new MediaTranscoder.Plan(MediaTranscoder.Action.TRANSCODE, false, true), in, out, "veryfast", 26);
+        String args = String.join(" ", encode);
+        assertTrue(args.contains("-c:v libx264 -preset veryfast -crf 26 -pix_fmt yuv420p"));
+        assertTrue(args.contains("-c:a copy"));
+        assertFalse(args.contains("-c:v copy"));
+    }
+
+    @Test
+    void probeRunsThroughPumpAndIsBounded() throws Exception {
+        Path ffprobe = tempDir.resolve("ffprobe");
+        Files.writeString(ffprobe, """
+                #!/bin/sh
+                if [ "$FAKE_STALL" = "1" ]; then sleep 30; fi
+                echo "warning: something odd" >&2
+                echo '{"format":{"format_name":"mov,mp4"},"streams":[{"codec_type":"video","codec_name":"h264"}]}'
+                """);
+        assertTrue(ffprobe.toFile().setExecutable(true));
+        ToolRegistry tools = new ToolRegistry();
+        ReflectionTestUtils.setField(tools, "ffprobePath", ffprobe.toString());
+
+        try (ProcessPump pump = new ProcessPump(1)) {
+            MediaTranscoder transcoder = new MediaTranscoder(tools, VideoMetrics.noop(), pump);
+            assertEquals(new MediaTranscoder.Probe("mov,mp4", "h264", null), transcoder.probe(tempDir.resolve("a.mp4")));
+
+            Path stalled = tempDir.resolve("stalled");
+            Files.writeString(stalled, "#!/bin/sh\nFAKE_STALL=1 exec " + ffprobe + " \"$@\"\n");
+            assertTrue(stalled.toFile().setExecutable(true));
+            ReflectionTestUtils.setField(tools, "ffprobePath", stalled.toString());
+            ReflectionTestUtils.setField(transcoder, "probeTimeoutSeconds", 1L);
+            long start = System.nanoTime();
+            assertThrows(IOException.class, () -> transcoder.probe(tempDir.resolve("a.mp4")));
+            assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+class PreviewCacheTest {
+
+    @Test
+    void successIsServedFromCache() throws Exception {
+        PreviewCache cache = new PreviewCache();
+        AtomicInteger loads = new AtomicInteger();
+        PreviewCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return ResponseEntity.ok(Map.of("title", "clip", "videoUrl", ""));
+        };
+
+        cache.get("instagram:instagram.com/reel/abc", loader);
+        cache.get("instagram:instagram.com/reel/abc", loader);
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void badRequestsAreNotCached() throws Exception {
+        PreviewCache cache = new PreviewCache();
+        AtomicInteger loads = new AtomicInteger();
+        PreviewCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return ResponseEntity.badRequest().body(Map.of("error", "bad"));
+        };
+
+        cache.get("k", loader);
+        cache.get("k", loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void ttlIsCappedBySignedCdnExpiry() {
+        PreviewCache cache = new PreviewCache();
+        long now = 1_700_000_000_000L;
+        long cdnExpirySeconds = now / 1000 + 120;
+        String videoUrl = "https://scontent.cdninstagram.com/v/t50.mp4?_nc_ht=x&oe=" + Long.toHexString(cdnExpirySeconds);
+
+        long expiresAt = cache.expiryFor(ResponseEntity.ok(Map.of("videoUrl", videoUrl)), now);
+
+        assertEquals(cdnExpirySeconds * 1000 - 60_000, expiresAt);
+        assertTrue(cache.expiryFor(ResponseEntity.status(500).body(Map.of("error", "x")), now) <= now + 30_000);
+    }
+}
@@ -0,0 +1,76 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ServerSocket;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ProxyPoolTest {
+
+    @Test
+    void weightsSelectionByConfigAndHealth() {
+        ProxyPool pool = new ProxyPool("http://127.0.0.1:3128|3,http://127.0.0.1:3129|1, not a url", 0, 3, 60_000);
+        assertEquals(2, pool.snapshot().size());
+
+        // Trọng số 3:1 -> 75% đầu thuộc proxy thứ nhất
+        assertEquals("http://127.0.0.1:3128", pool.select(Platform.TIKTOK, Set.of(), 0.70).url());
+        assertEquals("http://127.0.0.1:3129", pool.select(Platform.TIKTOK, Set.of(), 0.80).url());
+
+        // Proxy nhanh gấp 4 lần bù lại trọng số thấp hơn
+        ProxyPool.Proxy heavy = pool.select(Platform.TIKTOK, Set.of(), 0.0);
+        ProxyPool.Proxy light = pool.select(Platform.TIKTOK, Set.of(), 0.99);
+        pool.record(heavy, 800, true);
+        pool.record(light, 200, true);
+        assertEquals("http://127.0.0.1:3129", pool.select(Platform.TIKTOK, Set.of(), 0.60).url());
+
+        assertEquals("http://127.0.0.1:3128", pool.select(Platform.TIKTOK, Set.of("http://127.0.0.1:3129"), 0.99).url());
+    }
+
+    @Test
+    void keepsPlatformOnStickyProxyUntilItIsQuarantined() {
+        ProxyPool pool = new ProxyPool("http://127.0.0.1:3128,http://127.0.0.1:3129", 60_000, 2, 60_000);
+        ProxyPool.Proxy first = pool.select(Platform.FACEBOOK, Set.of(), 0.0);
+        assertEquals(first, pool.select(Platform.FACEBOOK, Set.of(), 0.99));
+        assertNotEquals(first, pool.select(Platform.INSTAGRAM, Set.of(), 0.99));
+
+        pool.record(first, -1, false);
+        assertEquals(first, pool.select(Platform.FACEBOOK, Set.of(), 0.99));
+        pool.record(first, -1, false);
+        assertNotEquals(first, pool.select(Platform.FACEBOOK, Set.of(), 0.0));
+        assertTrue(pool.snapshot().get(0).quarantined());
+    }
+
+    @Test
+    void probeRestoresReachableProxyOnly() throws Exception {
+        try (ServerSocket standIn = new ServerSocket(0)) {
+            int closedPort;
+            try (ServerSocket closed = new ServerSocket(0)) {
+                closedPort = closed.getLocalPort();
+            }
+            ProxyPool pool = new ProxyPool("http://127.0.0.1:" + standIn.getLocalPort() + ",http://127.0.0.1:" + closedPort, 0, 1, 0);
+            for (ProxyPool.Proxy proxy : new ProxyPool.Proxy[] {
+                    pool.select(Platform.TIKTOK, Set.of(), 0.0), pool.select(Platform.TIKTOK, Set.of(), 0.99)}) {
+                pool.record(proxy, -1, false);
+            }
+            assertNull(pool.select(Platform.TIKTOK, Set.of(), 0.5));
+
+            pool.probeQuarantined();
+            assertFalse(pool.snapshot().get(0).quarantined());
+            assertTrue(pool.snapshot().get(1).quarantined());
+            assertEquals("http://127.0.0.1:" + standIn.getLocalPort(), pool.select(Platform.TIKTOK, Set.of(), 0.99).url());
+        }
+    }
+
+    @Test
+    void emptyPoolMeansDirect() {
+        ProxyPool pool = new ProxyPool("", 0, 3, 60_000);
+        assertTrue(pool.isEmpty());
+        assertNull(pool.select(Platform.TIKTOK, Set.of()));
+    }
+}
@@ -0,0 +1,165 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import video.example.com.util.ProgressEvent;
+
+class RangedDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final byte[] video = new byte[300_000];
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean dropOnce = new AtomicBoolean();
+    private final AtomicBoolean stallOnce = new AtomicBoolean();
+
+    @BeforeEach
+    void start() throws IOException {
+        new Random(42).nextBytes(video);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/ranged.mp4", this::serveRanged);
+        server.createContext("/plain.mp4", exchange -> send(exchange, 200, 0, video.length));
+        server.createContext("/expired.mp4", exchange -> {
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private void serveRanged(HttpExchange exchange) throws IOException {
+        String header = exchange.getRequestHeaders().getFirst("Range");
+        Matcher m = RANGE.matcher(header == null ? "" : header);
+        if (!m.matches()) {
+            send(exchange, 200, 0, video.length);
+            return;
+        }
+        int start = Integer.parseInt(m.group(1));
+        int end = Math.min(video.length - 1, Integer.parseInt(m.group(2)));
+        ranges.add(start + "-" + end);
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + video.length);
+        // Khoảng cuối bị ngắt kết nối giữa chừng một lần để kiểm tra tải tiếp
+        if (end == video.length - 1 && start > 0 && dropOnce.compareAndSet(true, false)) {
+            exchange.sendResponseHeaders(206, end - start + 1);
+            exchange.getResponseBody().write(video, start, 1000);
+            exchange.getResponseBody().flush();
+            exchange.close();
+            return;
+        }
+        // Khoảng cuối gửi một phần rồi treo (không đóng kết nối) một lần để kiểm tra watchdog
+        if (end == video.length - 1 && start > 0 && stallOnce.compareAndSet(true, false)) {
+            exchange.sendResponseHeaders(206, end - start + 1);
+            exchange.getResponseBody().write(video, start, 1000);
+            exchange.getResponseBody().flush();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+            return;
+        }
+        send(exchange, 206, start, end - start + 1);
+    }
+
+    private void send(HttpExchange exchange, int status, int offset, int length) throws IOException {
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(video, offset, length);
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    void downloadsInParallelRangesAndResumesDroppedRange() throws Exception {
+        dropOnce.set(true);
+        RangedDownloader downloader = new RangedDownloader(4, 64, 2, 10);
+        List<ProgressEvent> events = new CopyOnWriteArrayList<>();
+
+        String path = downloader.download(url("/ranged.mp4"), tempDir.toFile(), "video.mp4", events::add);
+
+        assertEquals(tempDir.resolve("video.mp4").toString(), path);
+        assertArrayEquals(video, Files.readAllBytes(Path.of(path)));
+        assertFalse(Files.exists(tempDir.resolve("video.mp4.part")));
+        // Probe 0-0, 4 khoảng 75000 byte, rồi khoảng cuối được tải lại từ byte đã nhận
+        assertTrue(ranges.containsAll(List.of("0-0", "0-74999", "75000-149999", "150000-224999", "225000-299999")), ranges.toString());
+        assertEquals(2, ranges.stream().filter(r -> r.endsWith("-299999")).count(), ranges.toString());
+        ProgressEvent last = events.get(events.size() - 1);
+        assertEquals(100, last.wholePercent());
+        assertEquals(video.length, last.totalBytes());
+    }
+
+    @Test
+    void stalledRangeIsAbortedAndResumed() throws Exception {
+        stallOnce.set(true);
+        RangedDownloader downloader = new RangedDownloader(4, 64, 2, 1);
+        long start = System.nanoTime();
+
+        String path = downloader.download(url("/ranged.mp4"), tempDir.toFile(), "stalled.mp4", null);
+
+        assertArrayEquals(video, Files.readAllBytes(Path.of(path)));
+        assertEquals(2, ranges.stream().filter(r -> r.endsWith("-299999")).count(), ranges.toString());
+        assertTrue(System.nanoTime() - start < 8_000_000_000L);
+    }
+
+    @Test
+    void fallsBackToSingleStreamWithoutRangeSupport() throws Exception {
+        RangedDownloader downloader = new RangedDownloader(4, 64, 2, 10);
+        String path = downloader.download(url("/plain.mp4"), tempDir.toFile(), "plain.mp4", null);
+        assertArrayEquals(video, Files.readAllBytes(Path.of(path)));
+    }
+
+    @Test
+    void splitsIntoRangesNoSmallerThanMinimum() {
+        RangedDownloader downloader = new RangedDownloader(4, 1024, 2, 10);
+        assertEquals(List.of(new RangedDownloader.Range(0, 0, 99)), downloader.split(100));
+        List<RangedDownloader.Range> parts = downloader.split(10L * 1024 * 1024 + 1);
+        assertEquals(4, parts.size());
+        assertEquals(10L * 1024 * 1024, parts.get(3).end());
+    }
+
+    @Test
+    void failsWithoutLeavingPartialFile() {
+        RangedDownloader downloader = new RangedDownloader(4, 64, 2, 10);
+        assertThrows(IOException.class, () -> downloader.download(url("/expired.mp4"), tempDir.toFile(), "gone.mp4", null));
+        assertFalse(Files.exists(tempDir.resolve("gone.mp4.part")));
+        assertFalse(Files.exists(tempDir.resolve("gone.mp4")));
+    }
+}
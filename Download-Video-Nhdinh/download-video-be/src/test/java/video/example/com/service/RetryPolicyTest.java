@@ -0,0 +1,110 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import video.example.com.util.YtDlpException;
+
+class RetryPolicyTest {
+
+    private static RetryPolicy policy(int maxAttempts, int failureThreshold) {
+        return policy(maxAttempts, failureThreshold, new ProxyPool());
+    }
+
+    private static RetryPolicy policy(int maxAttempts, int failureThreshold, ProxyPool pool) {
+        RetryPolicy policy = new RetryPolicy(pool, VideoMetrics.noop());
+        ReflectionTestUtils.setField(policy, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(policy, "initialBackoffMs", 1L);
+        ReflectionTestUtils.setField(policy, "maxBackoffMs", 4L);
+        ReflectionTestUtils.setField(policy, "failureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(policy, "openMs", 60_000L);
+        return policy;
+    }
+
+    @Test
+    void retriesOnAnotherProxyThenGoesDirect() throws Exception {
+        ProxyPool pool = new ProxyPool("http://127.0.0.1:3128,http://127.0.0.1:3129", 60_000, 3, 60_000);
+        RetryPolicy policy = policy(3, 10, pool);
+        List<String> proxies = new CopyOnWriteArrayList<>();
+        AtomicInteger retries = new AtomicInteger();
+
+        String result = policy.execute(Platform.TIKTOK, (attempt, proxy) -> {
+            proxies.add(proxy);
+            if (attempt < 3) {
+                throw new YtDlpException(1, "ERROR: [TikTok] 1: Unable to download webpage: Tunnel connection failed: 407 Proxy Authentication Required");
+            }
+            return "ok";
+        }, (attempt, error, delayMs) -> retries.incrementAndGet());
+
+        assertEquals("ok", result);
+        assertEquals(2, retries.get());
+        assertEquals(Set.of("http://127.0.0.1:3128", "http://127.0.0.1:3129"), Set.copyOf(proxies.subList(0, 2)));
+        assertEquals("", proxies.get(2));
+        // Lỗi do proxy không tính cho platform
+        assertEquals(CircuitBreaker.State.CLOSED, policy.breaker(Platform.TIKTOK.id()).state());
+        assertTrue(pool.snapshot().stream().allMatch(view -> view.failures() == 1));
+    }
+
+    @Test
+    void doesNotRetryFatalErrors() {
+        RetryPolicy policy = policy(3, 10);
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(YtDlpException.class, () -> policy.execute(Platform.INSTAGRAM, (attempt, proxy) -> {
+            calls.incrementAndGet();
+            throw new YtDlpException(1, "ERROR: [Instagram] abc: This video is unavailable");
+        }));
+        assertEquals(1, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, policy.breaker(Platform.INSTAGRAM.id()).state());
+    }
+
+    @Test
+    void openBreakerFailsFastUntilProbeSucceeds() throws Exception {
+        RetryPolicy policy = policy(1, 2);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IOException.class, () -> policy.execute(Platform.FACEBOOK, (attempt, proxy) -> {
+                throw new IOException("Connection reset");
+            }));
+        }
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(CircuitOpenException.class, () -> policy.execute(Platform.FACEBOOK, (attempt, proxy) -> calls.incrementAndGet()));
+        assertThrows(CircuitOpenException.class, () -> policy.checkAvailable(Platform.FACEBOOK));
+        assertEquals(0, calls.get());
+        // Platform khác không bị ảnh hưởng
+        assertEquals("ok", policy.execute(Platform.TIKTOK, (attempt, proxy) -> "ok"));
+
+        CircuitBreaker breaker = new CircuitBreaker("probe", 1, 0);
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void classifiesErrorsAndBoundsBackoff() {
+        assertTrue(RetryPolicy.isRetryable(new YtDlpException(1, "ERROR: HTTP Error 429: Too Many Requests")));
+        assertTrue(RetryPolicy.isRetryable(new YtDlpException(1, "ERROR: something unexpected")));
+        assertFalse(RetryPolicy.isRetryable(new YtDlpException(1, "[debug] timeout=20\nERROR: Unsupported URL: https://x")));
+        assertFalse(RetryPolicy.isRetryable(new YtDlpException(2, "yt-dlp: error: no such option: --bogus")));
+        assertFalse(RetryPolicy.isRetryable(new YtDlpException(1, "ERROR: [facebook] 1: Unable to download webpage: HTTP Error 404: Not Found")));
+        assertFalse(RetryPolicy.isRetryable(new YtDlpException(1, "ERROR: [TikTok] 1: HTTP Error 410: Gone (read timeout)")));
+        assertTrue(RetryPolicy.isRetryable(new YtDlpException(1, "ERROR: [Instagram] abc: Requested content is not available, rate-limit reached or login required")));
+        assertTrue(RetryPolicy.isRetryable(new YtDlpException(1, "ERROR: [TikTok] 1: Unable to download webpage: The read operation timed out")));
+        assertFalse(RetryPolicy.isRetryable(new IOException("yt-dlp executable not found at /usr/bin/yt-dlp")));
+
+        assertEquals(500, RetryPolicy.backoffMillis(1, 1000, 10000, 0.0));
+        assertEquals(2000, RetryPolicy.backoffMillis(2, 1000, 10000, 1.0));
+        assertEquals(10000, RetryPolicy.backoffMillis(30, 1000, 10000, 1.0));
+    }
+}
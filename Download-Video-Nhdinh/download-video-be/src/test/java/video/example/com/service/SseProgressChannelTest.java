@@ -0,0 +1,122 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.util.ProgressEvent;
+
+class SseProgressChannelTest {
+
+    /**
+     * Emitter ghi lại dữ liệu gửi đi thay vì ghi ra HTTP response.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch writable;
+
+        RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingEmitter(CountDownLatch writable) {
+            this.writable = writable;
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            try {
+                writable.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Mỗi event gồm phần text "...data:", object dữ liệu, rồi "\n\n"
+            boolean dataNext = false;
+            for (DataWithMediaType item : items) {
+                if (dataNext) {
+                    messages.add(item.getData() instanceof String text ? text : "{json}");
+                }
+                dataNext = String.valueOf(item.getData()).endsWith("data:");
+            }
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            send(builder.build());
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+
+    @Test
+    void dropsDuplicatesAndDeliversTerminalAfterLatestProgress() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        SseProgressChannel channel = new SseProgressChannel(emitter, 60_000, 4);
+
+        channel.progress(ProgressEvent.ofPercent(10));
+        channel.progress(ProgressEvent.ofPercent(10));
+        channel.progress(ProgressEvent.ofPercent(20));
+        channel.progress(ProgressEvent.ofPercent(30));
+        channel.send("DONE_/tmp/a.mp4");
+        channel.close();
+
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        List<String> legacy = emitter.messages.stream().filter(m -> !m.startsWith("{")).toList();
+        assertEquals("DONE_/tmp/a.mp4", legacy.get(legacy.size() - 1));
+        assertEquals("PROGRESS_30", legacy.get(legacy.size() - 2));
+        // Khoảng cách 60s nên tối đa một progress được gửi ngay, phần còn lại dồn vào bản cuối
+        assertTrue(legacy.size() <= 3, "Progress was not coalesced: " + legacy);
+    }
+
+    @Test
+    void slowClientDoesNotBlockSenderAndKeepsTerminalMessage() throws Exception {
+        CountDownLatch writable = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter(writable);
+        SseProgressChannel channel = new SseProgressChannel(emitter, 0, 4);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            channel.send("FALLBACK_" + i);
+        }
+        channel.send("DONE_/tmp/a.mp4");
+        channel.close();
+        channel.send("late");
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "Sender was blocked by a slow client");
+
+        writable.countDown();
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        assertEquals("DONE_/tmp/a.mp4", emitter.messages.get(emitter.messages.size() - 1));
+        assertTrue(emitter.messages.size() <= 5, "Queue was not bounded: " + emitter.messages);
+    }
+
+    @Test
+    void disconnectStopsWriterThread() throws Exception {
+        AtomicReference<Thread> writerThread = new AtomicReference<>();
+        CountDownLatch written = new CountDownLatch(1);
+        SseProgressChannel channel = new SseProgressChannel(new RecordingEmitter(), (emitter, event) -> {
+            writerThread.set(Thread.currentThread());
+            written.countDown();
+        }, 0, 4);
+        channel.progress(ProgressEvent.ofPercent(10));
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+
+        channel.disconnect();
+
+        writerThread.get().join(5000);
+        assertFalse(writerThread.get().isAlive());
+    }
+}
@@ -0,0 +1,91 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StorageManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Path write(File dir, String name, int size) throws Exception {
+        Path file = dir.toPath().resolve(name);
+        Files.write(file, new byte[size]);
+        return file;
+    }
+
+    @Test
+    void shardsByKeyHash() throws Exception {
+        StorageManager storage = new StorageManager(tempDir, 10_000, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+        File dir = storage.directoryFor("tiktok:123");
+        assertEquals(dir, storage.directoryFor("tiktok:123"));
+        assertNotEquals(dir, storage.directoryFor("tiktok:124"));
+        assertEquals(tempDir.toAbsolutePath(), dir.toPath().getParent().getParent());
+        assertEquals(2, dir.getName().length());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUnpinnedFilesOverQuota() throws Exception {
+        StorageManager storage = new StorageManager(tempDir, 1000, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+        Path a = write(storage.directoryFor("a"), "a.mp4", 400);
+        Path b = write(storage.directoryFor("b"), "b.mp4", 400);
+        Path c = write(storage.directoryFor("c"), "c.mp4", 400);
+        storage.register(a);
+        storage.register(b);
+        storage.touch(a);
+
+        try (StorageManager.Lease lease = storage.pin(b)) {
+            // b cũ hơn a nhưng đang ghim nên a bị xoá trước
+            storage.register(c);
+            assertFalse(Files.exists(a));
+            assertTrue(Files.exists(b));
+            assertTrue(Files.exists(c));
+            assertEquals(800, storage.usedBytes());
+        }
+
+        Path d = write(storage.directoryFor("d"), "d.mp4", 400);
+        storage.register(d);
+        assertFalse(Files.exists(b));
+        assertEquals(800, storage.usedBytes());
+    }
+
+    @Test
+    void sweepRemovesIdleFilesAndOrphanedPartials() throws Exception {
+        File dir = tempDir.resolve("ab").resolve("cd").toFile();
+        assertTrue(dir.mkdirs());
+        Path leftover = write(dir, "old.mp4", 100);
+        Path partial = write(dir, "new.mp4.part", 100);
+        Files.setLastModifiedTime(partial, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+
+        // File còn lại từ lần chạy trước được nạp vào quota khi khởi động
+        StorageManager storage = new StorageManager(tempDir, 10_000, 0, 60_000, 60_000);
+        assertEquals(1, storage.fileCount());
+        assertEquals(100, storage.usedBytes());
+
+        Path fresh = write(dir, "fresh.mp4.part", 100);
+        storage.sweep();
+        assertTrue(Files.exists(leftover));
+        assertFalse(Files.exists(partial));
+        assertTrue(Files.exists(fresh));
+
+        StorageManager idle = new StorageManager(tempDir, 10_000, 0, 0, 60_000);
+        try (StorageManager.Lease lease = idle.pin(leftover)) {
+            idle.sweep();
+            assertTrue(Files.exists(leftover));
+        }
+        Thread.sleep(5);
+        idle.sweep();
+        assertFalse(Files.exists(leftover));
+        assertEquals(0, idle.usedBytes());
+    }
+}
@@ -0,0 +1,31 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ToolRegistryTest {
+
+    private static final String FFMPEG_OUTPUT = """
+            ffmpeg version 6.1.1-3ubuntu5 Copyright (c) 2000-2023 the FFmpeg developers
+            built with gcc 13 (Ubuntu 13.2.0-23ubuntu3)
+            configuration: --prefix=/usr --enable-gpl --enable-libx264 --enable-libdav1d
+            libavutil      58. 29.100 / 58. 29.100
+            """;
+
+    @Test
+    void parsesFfmpegVersionAndCapabilities() {
+        assertEquals("6.1.1-3ubuntu5", ToolRegistry.parseVersion(ToolRegistry.Tool.FFMPEG, FFMPEG_OUTPUT));
+        Set<String> capabilities = ToolRegistry.parseCapabilities(FFMPEG_OUTPUT);
+        assertTrue(capabilities.contains("libx264"));
+        assertTrue(capabilities.contains("gpl"));
+    }
+
+    @Test
+    void parsesYtDlpVersion() {
+        assertEquals("2025.06.30", ToolRegistry.parseVersion(ToolRegistry.Tool.YT_DLP, "2025.06.30\n"));
+    }
+}
@@ -0,0 +1,138 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class VideoFileServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final VideoFileServer server = new VideoFileServer();
+    private File file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = tempDir.resolve("clip.mp4").toFile();
+        Files.write(file.toPath(), content);
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", "/download"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertTrue(response.getHeader("ETag").startsWith("\""));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=100-199");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/1000", response.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+    }
+
+    @Test
+    void servesSuffixRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=-10");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals("bytes 990-999/1000", response.getHeader("Content-Range"));
+        assertEquals(10, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesMultipleRangesAsMultipart() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=0-9,500-509");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = new String(response.getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-9/1000"));
+        assertTrue(body.contains("Content-Range: bytes 500-509/1000"));
+        assertEquals(response.getContentLengthLong(), response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void staleIfRangeFallsBackToFullBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=0-9");
+        request.addHeader("If-Range", "\"stale\"");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(1000, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=5000-");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void matchingEtagReturns304() throws Exception {
+        String etag = serve(new MockHttpServletRequest("GET", "/download")).getHeader("ETag");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("If-None-Match", etag);
+
+        assertEquals(304, serve(request).getStatus());
+    }
+
+    @Test
+    void pinnedFilesBypassSendfile() throws Exception {
+        StorageManager storage = new StorageManager(tempDir, Long.MAX_VALUE, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new VideoFileServer(storage).serve(file, request, response);
+
+        // Lease đóng khi handler trả về nên file phải được gửi xong ngay trong request
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve(file, request, response);
+        return response;
+    }
+}
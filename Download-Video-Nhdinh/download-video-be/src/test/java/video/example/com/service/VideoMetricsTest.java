@@ -0,0 +1,64 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+
+class VideoMetricsTest {
+
+    @Test
+    void phaseTimerIsTaggedByPlatformAndOutcome() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        VideoMetrics metrics = new VideoMetrics(registry);
+
+        metrics.phase("download", System.nanoTime(), VideoMetrics.SUCCESS, "platform", "tiktok", "method", "direct");
+        metrics.phase("download", System.nanoTime(), VideoMetrics.FAILURE, "platform", "tiktok", "method", "direct");
+        metrics.phase("download", System.nanoTime(), VideoMetrics.SUCCESS, "platform", "tiktok", "method", "direct");
+
+        assertEquals(2, registry.get("video.download").tags("platform", "tiktok", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("video.download").tags("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void downloadedRecordsBytesAndThroughput() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        VideoMetrics metrics = new VideoMetrics(registry);
+
+        metrics.downloaded(Platform.FACEBOOK, "ytdlp", 4_000_000, TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals(4_000_000, registry.get("video.download.bytes").tags("platform", "facebook").counter().count());
+        assertEquals(2_000_000, registry.get("video.download.throughput").summary().max(), 1);
+    }
+
+    @Test
+    void retriesAndFallbacksAreCounted() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        VideoMetrics metrics = new VideoMetrics(registry);
+
+        metrics.retry(Platform.TIKTOK, "proxy");
+        metrics.retry(Platform.TIKTOK, "proxy");
+        metrics.fallback(Platform.INSTAGRAM, "direct", "ytdlp");
+
+        assertEquals(2, registry.get("video.retries").tags("reason", "proxy").counter().count());
+        assertEquals(1, registry.get("video.fallbacks").tags("platform", "instagram", "to", "ytdlp").counter().count());
+    }
+
+    @Test
+    void prometheusScrapeExposesHistogramBuckets() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        VideoMetrics metrics = new VideoMetrics(registry);
+
+        metrics.phase("extract", System.nanoTime(), VideoMetrics.SUCCESS, "platform", "instagram");
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("video_extract_seconds_bucket{"), scrape);
+        assertTrue(scrape.contains("outcome=\"success\""), scrape);
+    }
+}
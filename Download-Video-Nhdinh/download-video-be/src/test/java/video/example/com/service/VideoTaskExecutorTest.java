@@ -0,0 +1,35 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import video.example.com.util.YtDlpException;
+
+class VideoTaskExecutorTest {
+
+    @Test
+    void onlyOverloadErrorsShrinkTheLimit() {
+        VideoTaskExecutor executor = new VideoTaskExecutor();
+        executor.init();
+        AdaptiveLimit limit = executor.limit(Platform.TIKTOK);
+        int initial = limit.limit();
+
+        // Video bị xoá không nói gì về tải của TikTok
+        assertThrows(IOException.class, () -> executor.run(Platform.TIKTOK, () -> {
+            throw new YtDlpException(1, "ERROR: [TikTok] 1: Video unavailable: this video has been removed");
+        }));
+        assertEquals(initial, limit.limit());
+        assertEquals(0, limit.inFlight());
+
+        assertThrows(IOException.class, () -> executor.run(Platform.TIKTOK, () -> {
+            throw new YtDlpException(1, "ERROR: [TikTok] 1: HTTP Error 429: Too Many Requests");
+        }));
+        assertEquals(Math.max(1, (int) (initial * 0.7)), limit.limit());
+        assertEquals(0, limit.inFlight());
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,89 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class VideoUrlServiceTest {
+
+    @Test
+    void urlVariantsShareOneKey() {
+        VideoUrlService service = new VideoUrlService();
+        assertEquals("instagram:abc123", service.resolve(Platform.INSTAGRAM, "https://www.instagram.com/reel/abc123/?igsh=xyz").key());
+        assertEquals("instagram:abc123", service.resolve(Platform.INSTAGRAM, "https://instagram.com/p/abc123").key());
+
+        assertEquals("facebook:42", service.resolve(Platform.FACEBOOK, "https://www.facebook.com/watch/?v=42&ref=share").key());
+        assertEquals("facebook:42", service.resolve(Platform.FACEBOOK, "https://m.facebook.com/somepage/videos/42/").key());
+        assertEquals("https://www.facebook.com/watch/?v=42",
+                service.resolve(Platform.FACEBOOK, "https://web.facebook.com/reel/42?s=1").canonicalUrl());
+
+        VideoUrlService.VideoRef tiktok = service.resolve(Platform.TIKTOK, "https://www.tiktok.com/@user.name/video/7234567890123456789?is_from_webapp=1");
+        assertEquals("tiktok:7234567890123456789", tiktok.key());
+        assertEquals("https://www.tiktok.com/@user.name/video/7234567890123456789", tiktok.canonicalUrl());
+    }
+
+    @Test
+    void shortLinksAreResolvedOnceAndCached() {
+        AtomicInteger fetches = new AtomicInteger();
+        Map<String, String> redirects = Map.of(
+                "https://vm.tiktok.com/ZMabc123/", "https://www.tiktok.com/@user/video/111?_r=1",
+                "https://fb.watch/xYz_1/", "https://m.facebook.com/watch/?v=222");
+        VideoUrlService service = new VideoUrlService() {
+            @Override
+            protected String fetchRedirectTarget(String url) {
+                fetches.incrementAndGet();
+                return redirects.get(url);
+            }
+        };
+
+        assertEquals("tiktok:111", service.resolve(Platform.TIKTOK, "https://vm.tiktok.com/ZMabc123/").key());
+        assertEquals("tiktok:111", service.resolve(Platform.TIKTOK, "https://vm.tiktok.com/ZMabc123/").key());
+        // Dừng ở bước có ID video, không GET trang đích
+        assertEquals(1, fetches.get());
+        assertEquals("facebook:222", service.resolve(Platform.FACEBOOK, "https://fb.watch/xYz_1/").key());
+    }
+
+    @Test
+    void shortLinkRedirectOutsidePlatformIsRejected() {
+        VideoUrlService service = new VideoUrlService() {
+            @Override
+            protected String fetchRedirectTarget(String url) {
+                return "https://evil.example/www.tiktok.com/@user/video/111";
+            }
+        };
+        assertEquals("tiktok:vm.tiktok.com/ZMabc123", service.resolve(Platform.TIKTOK, "https://vm.tiktok.com/ZMabc123/").key());
+        assertTrue(VideoUrlService.isPlatformHost(Platform.FACEBOOK, "https://m.facebook.com/watch/?v=1"));
+        assertFalse(VideoUrlService.isPlatformHost(Platform.FACEBOOK, "https://facebook.com.evil.example/"));
+    }
+
+    @Test
+    void unknownFormsFallBackToNormalizedUrl() {
+        VideoUrlService service = new VideoUrlService() {
+            @Override
+            protected String fetchRedirectTarget(String url) {
+                return null;
+            }
+        };
+        assertEquals("facebook:facebook.com/story.php?id=1",
+                service.resolve(Platform.FACEBOOK, "https://www.facebook.com/story.php/?id=1").key());
+        // Chỉ khác nhau ở query nên query định danh phải nằm trong khoá
+        assertEquals("facebook:facebook.com/story.php?story_fbid=10&id=7",
+                service.resolve(Platform.FACEBOOK, "https://www.facebook.com/story.php?id=7&story_fbid=10&mibextid=abc").key());
+        assertEquals("facebook:facebook.com/permalink.php?story_fbid=11&id=7",
+                service.resolve(Platform.FACEBOOK, "https://www.facebook.com/permalink.php?story_fbid=11&id=7").key());
+    }
+
+    @Test
+    void validationKeepsControllerRules() {
+        VideoUrlService service = new VideoUrlService();
+        assertTrue(service.isValid(Platform.TIKTOK, "https://vt.tiktok.com/abc"));
+        assertFalse(service.isValid(Platform.TIKTOK, "https://tiktok.com/" + "a".repeat(2048)));
+        assertFalse(service.isValid(Platform.INSTAGRAM, "https://instagram.com/p/abc"));
+        assertFalse(service.isValid(Platform.FACEBOOK, null));
+    }
+}
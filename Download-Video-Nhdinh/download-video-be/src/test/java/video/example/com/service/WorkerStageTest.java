@@ -0,0 +1,89 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+class WorkerStageTest {
+
+    @Test
+    void boundsWorkersAndBlocksProducersWhenQueueIsFull() throws Exception {
+        WorkerStage stage = new WorkerStage("test", 2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        VideoTaskExecutor.IoTask<String> task = () -> {
+            peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            return "ok";
+        };
+
+        ExecutorService producers = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<?> a = producers.submit(() -> stage.run(task));
+            Future<?> b = producers.submit(() -> stage.run(task));
+            Future<?> c = producers.submit(() -> stage.run(task));
+            waitUntil(() -> stage.stats().running() == 2 && stage.backlog() == 1);
+
+            // 2 worker + 1 chỗ trong hàng đợi đã đầy: producer thứ tư bị chặn
+            Future<?> d = producers.submit(() -> stage.run(task));
+            Thread.sleep(100);
+            assertFalse(d.isDone());
+            assertEquals(1, stage.backlog());
+
+            release.countDown();
+            for (Future<?> f : new Future<?>[] {a, b, c, d}) {
+                assertEquals("ok", f.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(2, peak.get());
+            WorkerStage.Stats stats = stage.stats();
+            assertEquals(4, stats.completed());
+            assertEquals(0, stats.queued());
+            assertEquals(0, stats.running());
+        } finally {
+            producers.shutdownNow();
+            stage.shutdown();
+        }
+    }
+
+    @Test
+    void rethrowsTaskFailuresAndFreesTheSlot() throws Exception {
+        WorkerStage stage = new WorkerStage("test", 1, 0);
+        try {
+            IOException error = assertThrows(IOException.class, () -> stage.run(() -> {
+                throw new IOException("ffmpeg exited with code 1");
+            }));
+            assertEquals("ffmpeg exited with code 1", error.getMessage());
+            assertEquals("next", stage.run(() -> "next"));
+            assertEquals(1, stage.stats().failed());
+            assertEquals(1, stage.stats().completed());
+        } finally {
+            stage.shutdown();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class YtDlpWorkerPoolTest {
+
+    // Worker giả nói cùng giao thức với ytdlp_worker.py: in lại từng tham số, "crash" thì chết giữa job
+    private static final String STAND_IN = """
+            import json, os, sys, time
+            def send(m):
+                sys.stdout.write(json.dumps(m) + "\\n"); sys.stdout.flush()
+            send({"type": "ready", "pid": os.getpid(), "version": "stand-in"})
+            for raw in sys.stdin:
+                job = json.loads(raw)
+                print("not a protocol line", flush=True)
+                for arg in job["args"]:
+                    if arg == "crash":
+                        os._exit(9)
+                    if arg == "hang":
+                        time.sleep(60)
+                    send({"id": job["id"], "type": "line", "stream": "out", "line": arg})
+                send({"id": job["id"], "type": "line", "stream": "err", "line": "pid=%d" % os.getpid()})
+                send({"id": job["id"], "type": "exit", "code": 1 if "fail" in job["args"] else 0})
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private YtDlpWorkerPool pool;
+
+    @AfterEach
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private YtDlpWorkerPool pool(String script, int size, int maxJobs) throws IOException {
+        Path file = tempDir.resolve("worker.py");
+        Files.writeString(file, script);
+        pool = new YtDlpWorkerPool(List.of("python3", "-u", file.toString()), size, maxJobs);
+        return pool;
+    }
+
+    private static String pid(YtDlpWorkerPool.Result result) {
+        return result.stderr().strip();
+    }
+
+    @Test
+    void runsJobsOnWarmWorkersAndStreamsLines() throws Exception {
+        pool(STAND_IN, 1, 10);
+        assertTrue(pool.isAvailable(Platform.TIKTOK));
+
+        List<String> lines = new ArrayList<>();
+        YtDlpWorkerPool.Result result = pool.execute(Platform.TIKTOK, List.of("--dump-single-json", "https://www.tiktok.com/@a/video/1"), lines::add);
+        assertEquals(0, result.exitCode());
+        assertEquals("--dump-single-json\nhttps://www.tiktok.com/@a/video/1\n", result.stdout());
+        assertEquals(3, lines.size());
+
+        YtDlpWorkerPool.Result failed = pool.execute(Platform.TIKTOK, List.of("fail"), null);
+        assertEquals(1, failed.exitCode());
+        // Cùng một tiến trình phục vụ cả hai job
+        assertEquals(pid(result), pid(failed));
+    }
+
+    @Test
+    void recyclesWorkerAfterMaxJobs() throws Exception {
+        pool(STAND_IN, 1, 2);
+        String first = pid(pool.execute(Platform.FACEBOOK, List.of("a"), null));
+        assertEquals(first, pid(pool.execute(Platform.FACEBOOK, List.of("b"), null)));
+        assertNotEquals(first, pid(pool.execute(Platform.FACEBOOK, List.of("c"), null)));
+    }
+
+    @Test
+    void replacesCrashedWorker() throws Exception {
+        pool(STAND_IN, 1, 10);
+        String before = pid(pool.execute(Platform.INSTAGRAM, List.of("a"), null));
+        IOException e = assertThrows(IOException.class, () -> pool.execute(Platform.INSTAGRAM, List.of("crash"), null));
+        assertTrue(e.getMessage().contains("exited during job"), e.getMessage());
+        String after = pid(pool.execute(Platform.INSTAGRAM, List.of("a"), null));
+        assertNotEquals(before, after);
+        assertTrue(pool.isAvailable(Platform.INSTAGRAM));
+    }
+
+    @Test
+    void replacesWorkerWhenJobTimesOut() throws Exception {
+        pool(STAND_IN, 1, 10);
+        String before = pid(pool.execute(Platform.TIKTOK, List.of("a"), null));
+        long start = System.nanoTime();
+        IOException e = assertThrows(IOException.class,
+                () -> pool.execute(Platform.TIKTOK, List.of("hang"), null, Duration.ofMillis(300)));
+        assertTrue(e.getMessage().contains("timed out"), e.getMessage());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        String after = pid(pool.execute(Platform.TIKTOK, List.of("a"), null));
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    void disablesPoolWhenModuleVersionDiffersFromBinary() throws Exception {
+        Path file = tempDir.resolve("worker.py");
+        Files.writeString(file, STAND_IN);
+        pool = new YtDlpWorkerPool(List.of("python3", "-u", file.toString()), 1, 10, "2024.08.06");
+        assertFalse(pool.isAvailable(Platform.TIKTOK));
+
+        pool.shutdown();
+        pool = new YtDlpWorkerPool(List.of("python3", "-u", file.toString()), 1, 10, "stand-in");
+        assertTrue(pool.isAvailable(Platform.TIKTOK));
+    }
+
+    @Test
+    void disablesPoolWhenWorkerCannotStart() throws Exception {
+        pool("""
+                import json, sys
+                sys.stdout.write(json.dumps({"type": "fatal", "error": "cannot import yt_dlp"}) + "\\n")
+                sys.exit(3)
+                """, 1, 10);
+        assertFalse(pool.isAvailable(Platform.TIKTOK));
+        assertFalse(pool.isAvailable(Platform.FACEBOOK));
+    }
+}
@@ -0,0 +1,46 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FacebookVideoUtilTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path ytDlp(String script) throws IOException {
+        Path file = tempDir.resolve("yt-dlp");
+        Files.writeString(file, "#!/bin/sh\n" + script);
+        assertTrue(file.toFile().setExecutable(true));
+        return file;
+    }
+
+    @Test
+    void streamsStdoutOfConfiguredBinary() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FacebookVideoUtil.streamVideoUsingYtDlp(ytDlp("printf video-bytes\n").toString(),
+                "https://www.facebook.com/watch/?v=1", ProcessSpawner.DIRECT, Duration.ofSeconds(30), out);
+        assertEquals("video-bytes", out.toString());
+    }
+
+    @Test
+    void stalledStreamIsKilledAfterTimeout() throws Exception {
+        String path = ytDlp("printf start\nexec sleep 30\n").toString();
+        long start = System.nanoTime();
+        IOException e = assertThrows(IOException.class, () -> FacebookVideoUtil.streamVideoUsingYtDlp(path,
+                "https://www.facebook.com/watch/?v=1", ProcessSpawner.DIRECT, Duration.ofMillis(300), new ByteArrayOutputStream()));
+        assertTrue(e.getMessage().contains("timed out"), e.getMessage());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+    }
+}
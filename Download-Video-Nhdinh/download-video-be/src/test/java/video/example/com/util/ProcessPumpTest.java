@@ -0,0 +1,84 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ProcessPumpTest {
+
+    private final ProcessPump pump = new ProcessPump(2);
+
+    @AfterEach
+    void tearDown() {
+        pump.close();
+    }
+
+    private static Process sh(String script) throws IOException {
+        return new ProcessBuilder("sh", "-c", script).redirectErrorStream(true).start();
+    }
+
+    @Test
+    void splitsLinesLikeReadLineAndReturnsExitCode() throws Exception {
+        List<String> lines = new ArrayList<>();
+
+        int exitCode = pump.run(sh("printf 'a\\nb\\r\\nc\\rd\\n\\nlast'; exit 3"), lines::add, Duration.ofSeconds(30));
+
+        assertEquals(3, exitCode);
+        assertEquals(List.of("a", "b", "c", "d", "", "last"), lines);
+    }
+
+    @Test
+    void readsManyProcessesWithFewThreads() throws Exception {
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        List<List<String>> outputs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            List<String> lines = new ArrayList<>();
+            outputs.add(lines);
+            Process process = sh("for n in 1 2 3 4 5; do echo " + i + "-$n; sleep 0.01; done");
+            results.add(pump.watch(process, process.getInputStream(), lines::add, Duration.ofSeconds(30)));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(0, results.get(i).get(30, TimeUnit.SECONDS));
+            assertEquals(List.of(i + "-1", i + "-2", i + "-3", i + "-4", i + "-5"), outputs.get(i));
+        }
+        assertEquals(2, pump.threads());
+    }
+
+    @Test
+    void timeoutKillsProcess() throws Exception {
+        Process process = sh("echo started; sleep 30");
+
+        CompletableFuture<Integer> result = pump.watch(process, process.getInputStream(), null, Duration.ofMillis(200));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause(), String.valueOf(error.getCause()));
+        assertFalse(process.isAlive());
+    }
+
+    @Test
+    void failingLineHandlerKillsProcess() throws Exception {
+        Process process = sh("echo boom; sleep 30");
+
+        IOException error = assertThrows(IOException.class, () -> pump.run(process, line -> {
+            throw new IllegalStateException("bad line " + line);
+        }, Duration.ofSeconds(30)));
+
+        assertEquals("bad line boom", error.getCause().getMessage());
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,54 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class YtDlpProgressParserTest {
+
+    private final YtDlpProgressParser parser = new YtDlpProgressParser();
+
+    @Test
+    void parsesFragmentedProgressLine() {
+        assertTrue(parser.parse("[download]  45.3% of ~  10.00MiB at    1.50MiB/s ETA 01:07 (frag 3/20)"));
+
+        assertEquals(45.3, parser.percent(), 1e-9);
+        assertEquals(45, parser.wholePercent());
+        assertEquals(10L * 1024 * 1024, parser.totalBytes());
+        assertEquals((long) (10L * 1024 * 1024 * 0.453), parser.downloadedBytes());
+        assertEquals((long) (1.5 * 1024 * 1024), parser.speedBytesPerSecond());
+        assertEquals(67, parser.etaSeconds());
+        assertEquals(3, parser.fragmentIndex());
+        assertEquals(20, parser.fragmentCount());
+    }
+
+    @Test
+    void parsesCompletedLine() {
+        assertTrue(parser.parse("[download] 100% of   12.34KiB in 00:00:03 at 4.11KiB/s"));
+
+        assertEquals(100, parser.wholePercent());
+        assertEquals((long) (12.34 * 1024), parser.totalBytes());
+        assertEquals(-1, parser.etaSeconds());
+        assertEquals(-1, parser.fragmentIndex());
+    }
+
+    @Test
+    void handlesUnknownValues() {
+        assertTrue(parser.parse("[download]   0.0% of Unknown size at Unknown B/s ETA Unknown"));
+
+        assertEquals(0, parser.wholePercent());
+        assertEquals(-1, parser.totalBytes());
+        assertEquals(-1, parser.downloadedBytes());
+        assertEquals(-1, parser.speedBytesPerSecond());
+        assertEquals(-1, parser.etaSeconds());
+    }
+
+    @Test
+    void ignoresOtherLines() {
+        assertFalse(parser.parse("[download] Destination: /tmp/video.mp4"));
+        assertFalse(parser.parse("[info] 7212345678901234567: Downloading 1 format(s): 0"));
+        assertFalse(parser.parse(""));
+    }
+}
@@ -0,0 +1,123 @@
+package video.example.com.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import video.example.com.service.VideoFileServer;
+
+/**
+ * Phục vụ file 10 MB – 1 GB qua VideoFileServer (transferTo) so với cách cũ chép InputStream qua buffer heap.
+ * Response ghi vào một sink bỏ dữ liệu để chỉ đo phía đọc/chép.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileServingBenchmark {
+
+    @Param({"10", "100", "1024"})
+    public int sizeMb;
+
+    private File file;
+    private final VideoFileServer server = new VideoFileServer();
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = Files.createTempFile("bench-video", ".mp4").toFile();
+        byte[] chunk = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(chunk);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            for (int i = 0; i < sizeMb; i++) {
+                out.write(chunk);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long videoFileServer() throws IOException {
+        DiscardingResponse response = new DiscardingResponse();
+        server.serve(file, new MockHttpServletRequest("GET", "/api/download"), response);
+        return response.sink.count;
+    }
+
+    @Benchmark
+    public long videoFileServerRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/download");
+        request.addHeader("Range", "bytes=" + (file.length() / 2) + "-");
+        DiscardingResponse response = new DiscardingResponse();
+        server.serve(file, request, response);
+        return response.sink.count;
+    }
+
+    @Benchmark
+    public long legacyInputStreamCopy() throws IOException {
+        CountingOutputStream sink = new CountingOutputStream();
+        try (InputStream in = new FileInputStream(file)) {
+            in.transferTo(sink);
+        }
+        return sink.count;
+    }
+
+    static final class DiscardingResponse extends MockHttpServletResponse {
+        final CountingOutputStream sink = new CountingOutputStream();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return sink;
+        }
+    }
+
+    static final class CountingOutputStream extends ServletOutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package video.example.com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import video.example.com.util.YtDlpProgressParser;
+
+/**
+ * Parse một đoạn output yt-dlp --newline điển hình: cách cũ (matches + replaceAll trên mỗi dòng)
+ * so với YtDlpProgressParser.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProgressParsingBenchmark {
+
+    private static final String LEGACY_PATTERN = ".*?(\\d{1,3})\\.\\d+%.*";
+
+    private final String[] lines = {
+            "[tiktok] Extracting URL: https://www.tiktok.com/@user/video/7212345678901234567",
+            "[info] 7212345678901234567: Downloading 1 format(s): bytevc1_1080p_1507304-1",
+            "[download] Destination: /tmp/2b0e7a7e-2f54-4a0c-9a55-1c0bb0a6f1c3.mp4",
+            "[download]   0.0% of   10.52MiB at  Unknown B/s ETA Unknown",
+            "[download]  12.7% of   10.52MiB at    1.23MiB/s ETA 00:07",
+            "[download]  45.3% of ~  10.52MiB at    2.01MiB/s ETA 00:03 (frag 9/20)",
+            "[download]  99.9% of   10.52MiB at    3.80MiB/s ETA 00:00",
+            "[download] 100% of   10.52MiB in 00:00:04 at 2.61MiB/s",
+            "[Merger] Merging formats into \"/tmp/2b0e7a7e-2f54-4a0c-9a55-1c0bb0a6f1c3.mp4\"",
+    };
+
+    private final YtDlpProgressParser parser = new YtDlpProgressParser();
+
+    @Benchmark
+    public void legacyRegex(Blackhole blackhole) {
+        for (String line : lines) {
+            if (line.matches(LEGACY_PATTERN)) {
+                blackhole.consume(Integer.parseInt(line.replaceAll(LEGACY_PATTERN, "$1")));
+            }
+        }
+    }
+
+    @Benchmark
+    public void progressParser(Blackhole blackhole) {
+        for (String line : lines) {
+            if (parser.parse(line)) {
+                blackhole.consume(parser.wholePercent());
+                blackhole.consume(parser.downloadedBytes());
+                blackhole.consume(parser.speedBytesPerSecond());
+            }
+        }
+    }
+}
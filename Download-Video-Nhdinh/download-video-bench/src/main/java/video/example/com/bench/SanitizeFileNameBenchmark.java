@@ -0,0 +1,37 @@
+package video.example.com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import video.example.com.util.FacebookVideoUtil;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SanitizeFileNameBenchmark {
+
+    @Param({
+            "Funny cat compilation 2024 - part 3",
+            "Tổng hợp video hài hước nhất tuần 🎉🔥 #trending #viral",
+            "!!!???"
+    })
+    public String title;
+
+    @Benchmark
+    public String sanitizeFileName() {
+        return FacebookVideoUtil.sanitizeFileName(title);
+    }
+}
@@ -0,0 +1,100 @@
+package video.example.com.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import video.example.com.service.Platform;
+import video.example.com.service.VideoUrlService;
+import video.example.com.util.TiktokVideoUtil;
+
+/**
+ * Kiểm tra URL trong controller: {@code url.matches(...)} (compile lại regex mỗi lần) so với Pattern biên dịch sẵn,
+ * {@link VideoUrlService} (regex biên dịch sẵn + lấy ID video), cùng với kiểm tra thumbnail/video URL của TikTok.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlValidationBenchmark {
+
+    // Regex các controller dùng trước khi chuyển sang VideoUrlService
+    private static final String TIKTOK_REGEX = "https?://(www\\.)?(tiktok\\.com|vm\\.tiktok\\.com|vt\\.tiktok\\.com)/.*";
+    private static final String FACEBOOK_REGEX = "https?://(www\\.)?(facebook\\.com|fb\\.watch|fb\\.com)/.*";
+    private static final String INSTAGRAM_REGEX = "https?://(www\\.)?instagram\\.com/reel/[a-zA-Z0-9_-]+(/|\\?[^\\s]*)?";
+
+    @Param({"tiktok", "facebook", "instagram"})
+    public String platform;
+
+    private String url;
+    private String regex;
+    private Pattern pattern;
+    private Platform videoPlatform;
+    private final VideoUrlService videoUrlService = new VideoUrlService();
+
+    private final String thumbnailUrl = "https://p16-sign-va.tiktokcdn.com/obj/tos-maliva-p-0068/abc123~tplv-dmt-logom:tos.jpeg?x-expires=1700000000";
+    private final String videoUrl = "https://v16-webapp-prime.tiktokcdn.com/video/tos/useast2a/abc123/video.mp4";
+
+    @Setup
+    public void setUp() {
+        switch (platform) {
+            case "tiktok" -> {
+                url = "https://www.tiktok.com/@someone/video/7212345678901234567?is_from_webapp=1&sender_device=pc";
+                regex = TIKTOK_REGEX;
+            }
+            case "facebook" -> {
+                url = "https://www.facebook.com/watch/?v=1234567890123456&ref=sharing";
+                regex = FACEBOOK_REGEX;
+            }
+            default -> {
+                url = "https://www.instagram.com/reel/C1a2B3c4D5e/?igsh=MWQ1ZGUxMzBkMA==";
+                regex = INSTAGRAM_REGEX;
+            }
+        }
+        pattern = Pattern.compile(regex);
+        videoPlatform = Platform.valueOf(platform.toUpperCase());
+    }
+
+    @Benchmark
+    public boolean stringMatches() {
+        return url.matches(regex);
+    }
+
+    @Benchmark
+    public boolean precompiledPattern() {
+        return pattern.matcher(url).matches();
+    }
+
+    @Benchmark
+    public boolean serviceIsValid() {
+        return videoUrlService.isValid(videoPlatform, url);
+    }
+
+    @Benchmark
+    public VideoUrlService.VideoRef serviceResolve() {
+        return videoUrlService.resolve(videoPlatform, url);
+    }
+
+    @Benchmark
+    public boolean tiktokThumbnailUrl() {
+        return TiktokVideoUtil.isValidThumbnailUrl(thumbnailUrl);
+    }
+
+    @Benchmark
+    public boolean tiktokVideoUrl() {
+        return TiktokVideoUtil.isValidVideoUrl(videoUrl);
+    }
+}